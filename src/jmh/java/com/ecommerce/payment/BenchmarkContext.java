@@ -0,0 +1,41 @@
+package com.ecommerce.payment;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts the service against in-memory H2 with no gRPC or HTTP listener and
+ * a zero-latency gateway stub, so benchmarks measure only our own code
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(Map<String, Object> overrides) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.flyway.locations", "classpath:db/migration/{vendor}");
+        properties.put("spring.jpa.hibernate.ddl-auto", "validate");
+        properties.put("spring.sql.init.mode", "never");
+        properties.put("grpc.server.port", "-1");
+        properties.put("logging.level.root", "WARN");
+        properties.put("payment.gateway.stub.latency-min-ms", "0");
+        properties.put("payment.gateway.stub.latency-max-ms", "0");
+        properties.putAll(overrides);
+
+        SpringApplication application = new SpringApplication(PaymentServiceApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setDefaultProperties(properties);
+        return application.run();
+    }
+
+    public static ConfigurableApplicationContext start() {
+        return start(Map.of());
+    }
+}
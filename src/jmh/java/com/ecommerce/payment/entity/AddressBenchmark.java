@@ -0,0 +1,27 @@
+package com.ecommerce.payment.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AddressBenchmark {
+
+    private Address address;
+
+    @Setup
+    public void setUp() {
+        address = Address.builder()
+                .firstName("John").lastName("Doe")
+                .street("Main Street").number("123")
+                .province("Ontario").country("Canada").postalCode("M5H 2N2")
+                .build();
+    }
+
+    @Benchmark
+    public String fullAddress() {
+        return address.getFullAddress();
+    }
+}
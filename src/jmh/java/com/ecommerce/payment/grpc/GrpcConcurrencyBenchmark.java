@@ -0,0 +1,77 @@
+package com.ecommerce.payment.grpc;
+
+import com.ecommerce.payment.BenchmarkContext;
+import com.ecommerce.payment.service.PaymentRequests;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ProcessPayment through the gRPC server over an in-process channel, with
+ * {@value #IN_FLIGHT} calls in flight at once and a gateway that takes
+ * {@code gatewayLatencyMs} to answer, under both executor modes. Scores are
+ * completed calls per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(GrpcConcurrencyBenchmark.IN_FLIGHT)
+public class GrpcConcurrencyBenchmark {
+
+    static final int IN_FLIGHT = 1000;
+    private static final String SERVER_NAME = "payment-benchmark";
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    String executorMode;
+
+    @Param({"50"})
+    String gatewayLatencyMs;
+
+    private ConfigurableApplicationContext context;
+    private ManagedChannel channel;
+    private PaymentServiceGrpc.PaymentServiceFutureStub stub;
+    // Every call buys a new item so none is rejected as a duplicate
+    private final AtomicInteger nextItem = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of(
+                "payment.executor.mode", executorMode,
+                "grpc.server.in-process-name", SERVER_NAME,
+                "payment.gateway.stub.latency-min-ms", gatewayLatencyMs,
+                "payment.gateway.stub.latency-max-ms", gatewayLatencyMs));
+        channel = InProcessChannelBuilder.forName(SERVER_NAME).build();
+        stub = PaymentServiceGrpc.newFutureStub(channel);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @Benchmark
+    public List<PaymentResponse> processPayments() throws Exception {
+        List<ListenableFuture<PaymentResponse>> calls = new ArrayList<>(IN_FLIGHT);
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            int item = nextItem.incrementAndGet();
+            calls.add(stub.processPayment(PaymentRequests.request(1 + item / 10_000, item)));
+        }
+        List<PaymentResponse> responses = Futures.allAsList(calls).get();
+        for (PaymentResponse response : responses) {
+            if (!response.getSuccess()) {
+                throw new IllegalStateException("Payment failed: " + response.getMessage());
+            }
+        }
+        return responses;
+    }
+}
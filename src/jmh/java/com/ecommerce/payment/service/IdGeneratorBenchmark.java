@@ -0,0 +1,37 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.BenchmarkContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contended id issuing against the in-memory H2 sequences, one round trip per
+ * block of 100; the allocator alone is measured by BlockIdAllocatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class IdGeneratorBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private IdGenerator idGenerator;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        idGenerator = context.getBean(IdGenerator.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int nextPaymentId() {
+        return idGenerator.nextPaymentId();
+    }
+}
@@ -0,0 +1,89 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.BenchmarkContext;
+import com.ecommerce.payment.entity.Address;
+import com.ecommerce.payment.entity.CreditCardInfo;
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.entity.Receipt;
+import com.ecommerce.payment.grpc.PaymentRequest;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import com.ecommerce.payment.grpc.TotalCostResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pricing and response assembly in isolation from the database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PaymentServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private PaymentRequest request;
+    private Payment payment;
+    private Receipt receipt;
+    private Receipt snapshotReceipt;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        paymentService = context.getBean(PaymentService.class);
+        request = PaymentRequests.request(1, 1);
+
+        CreditCardInfo card = new CreditCardInfo();
+        card.setMaskedCardNumber("4111111111111111");
+        card.setNameOnCard("John Doe");
+        card.setExpiryDate("12/30");
+        payment = Payment.builder()
+                .paymentId(100_000_000).userId(1).itemId(1)
+                .itemCost(100).shippingCost(25)
+                .shippingType(Payment.ShippingType.EXPEDITED).estimatedShippingDays(3)
+                .hstAmount(16.25).totalAmount(141.25)
+                .paymentStatus(Payment.PaymentStatus.COMPLETED)
+                .address(Address.builder()
+                        .firstName("John").lastName("Doe")
+                        .street("Main Street").number("123")
+                        .province("Ontario").country("Canada").postalCode("M5H 2N2")
+                        .build())
+                .creditCardInfo(card)
+                .createdAt(LocalDateTime.now())
+                .build();
+        Receipt.ReceiptBuilder receiptBuilder = Receipt.builder()
+                .receiptId(10_000_000).payment(payment).receiptNumber("RCP-0000000001")
+                .customerName("John Doe").customerAddress(payment.getAddress().getFullAddress())
+                .itemId(1).itemCost(100).shippingCost(25).hstAmount(16.25).totalPaid(141.25)
+                .shippingEstimateDays(3);
+        receipt = receiptBuilder.build();
+        snapshotReceipt = receiptBuilder
+                .snapshot(PaymentService.receiptSnapshot(payment, receipt.getReceiptId()))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TotalCostResponse totalCost() {
+        return paymentService.TotalCost(request);
+    }
+
+    /**
+     * Receipt without a stored snapshot, mapped field by field
+     */
+    @Benchmark
+    public PaymentResponse buildSuccessResponse() {
+        return paymentService.buildSuccessResponse(payment, receipt);
+    }
+
+    @Benchmark
+    public PaymentResponse buildSuccessResponseFromSnapshot() {
+        return paymentService.buildSuccessResponse(payment, snapshotReceipt);
+    }
+}
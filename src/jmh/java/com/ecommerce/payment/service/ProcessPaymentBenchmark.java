@@ -0,0 +1,58 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.BenchmarkContext;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full processPayment (validation, reservation, gateway stub, finalization
+ * and receipt) against in-memory H2, under both executor modes and both
+ * receipt write modes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class ProcessPaymentBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    String executorMode;
+
+    @Param({"SYNC", "ASYNC"})
+    String receiptWriteMode;
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    // Every call buys a new item so none is rejected as a duplicate
+    private final AtomicInteger nextItem = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of(
+                "payment.executor.mode", executorMode,
+                "payment.receipt.write-mode", receiptWriteMode));
+        paymentService = context.getBean(PaymentService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PaymentResponse processPayment() {
+        int item = nextItem.incrementAndGet();
+        PaymentResponse response = paymentService
+                .processPayment(PaymentRequests.request(1 + item / 10_000, item))
+                .join();
+        if (!response.getSuccess()) {
+            throw new IllegalStateException("Payment failed: " + response.getMessage());
+        }
+        return response;
+    }
+}
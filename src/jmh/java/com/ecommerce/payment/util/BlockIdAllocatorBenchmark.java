@@ -0,0 +1,37 @@
+package com.ecommerce.payment.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+/**
+ * Contended id allocation; the in-memory block source stands in for the DB
+ * sequence so only the allocator itself is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class BlockIdAllocatorBenchmark {
+
+    @Param({"100", "1000"})
+    int blockSize;
+
+    private BlockIdAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        AtomicLong sequence = new AtomicLong();
+        allocator = new BlockIdAllocator(() -> {
+            long start = sequence.getAndAdd(blockSize);
+            return LongStream.range(start, start + blockSize).toArray();
+        });
+    }
+
+    @Benchmark
+    public long next() {
+        return allocator.next();
+    }
+}
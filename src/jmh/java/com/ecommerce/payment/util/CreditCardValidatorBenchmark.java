@@ -0,0 +1,36 @@
+package com.ecommerce.payment.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CreditCardValidatorBenchmark {
+
+    private CreditCardValidator validator;
+    private String cardNumber;
+    private String nameOnCard;
+    private String expiryDate;
+    private String securityCode;
+
+    @Setup
+    public void setUp() {
+        validator = new CreditCardValidator();
+        cardNumber = "4111 1111 1111 1111";
+        nameOnCard = "John Doe";
+        expiryDate = "12/30";
+        securityCode = "123";
+    }
+
+    @Benchmark
+    public CreditCardValidator.ValidationResult valid() {
+        return validator.validateCreditCard(cardNumber, nameOnCard, expiryDate, securityCode);
+    }
+
+    @Benchmark
+    public CreditCardValidator.ValidationResult invalid() {
+        return validator.validateCreditCard("4111 1111 1111 1112", "J0hn", "13/20", "12");
+    }
+}
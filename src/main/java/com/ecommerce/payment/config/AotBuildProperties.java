@@ -0,0 +1,126 @@
+package com.ecommerce.payment.config;
+
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Properties whose value decides which beans exist. Spring AOT evaluates
+ * those conditions when the image is built, so setting one differently at
+ * runtime would leave the old beans in place. The build records the values
+ * it saw; an AOT-mode start uses them for the properties it does not set and
+ * refuses to run when one is set to something else.
+ */
+public final class AotBuildProperties {
+
+    static final String RESOURCE = "META-INF/payment-aot-build.properties";
+    static final String PROPERTY_SOURCE = "aotBuildProperties";
+
+    /** Property name to the value its condition assumes when it is not set */
+    static final Map<String, String> BEAN_CHOOSING = new LinkedHashMap<>();
+
+    static {
+        BEAN_CHOOSING.put("payment.gateway.type", "stub");
+        BEAN_CHOOSING.put("payment.events.sink", "memory");
+        BEAN_CHOOSING.put("payment.executor.mode", "PLATFORM");
+        BEAN_CHOOSING.put("payment.datasource.replicas.enabled", "false");
+        BEAN_CHOOSING.put("spring.threads.virtual.enabled", "false");
+    }
+
+    private AotBuildProperties() {
+    }
+
+    static Properties capture(Environment environment) {
+        Properties values = new Properties();
+        BEAN_CHOOSING.forEach((name, defaultValue) ->
+                values.setProperty(name, environment.getProperty(name, defaultValue)));
+        return values;
+    }
+
+    /**
+     * One line per property that is set differently from the build
+     */
+    static List<String> differences(Properties built, Environment environment) {
+        List<String> differences = new ArrayList<>();
+        capture(environment).forEach((name, value) -> {
+            String builtValue = built.getProperty((String) name);
+            if (builtValue != null && !builtValue.equalsIgnoreCase((String) value)) {
+                differences.add(name + "=" + value + " (image built with " + builtValue + ")");
+            }
+        });
+        differences.sort(null);
+        return differences;
+    }
+
+    /**
+     * Writes the values seen during AOT processing into the image
+     */
+    public static class Recorder implements BeanFactoryInitializationAotProcessor {
+
+        @Override
+        public BeanFactoryInitializationAotContribution processAheadOfTime(ConfigurableListableBeanFactory beanFactory) {
+            Properties values = capture(beanFactory.getBean(Environment.class));
+            return (generationContext, code) -> {
+                StringWriter content = new StringWriter();
+                try {
+                    values.store(content, "Bean-choosing properties the AOT bean definitions were generated with");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                generationContext.getGeneratedFiles().addResourceFile(RESOURCE, content.toString());
+            };
+        }
+    }
+
+    /**
+     * Defaults an AOT-mode start to the build's values, and fails it before
+     * the context is created when the environment sets different ones
+     */
+    public static class Check implements EnvironmentPostProcessor, Ordered {
+
+        @Override
+        public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+            ClassPathResource resource = new ClassPathResource(RESOURCE, application.getClassLoader());
+            if (!AotDetector.useGeneratedArtifacts() || !resource.exists()) {
+                return;
+            }
+            Properties built;
+            try {
+                built = PropertiesLoaderUtils.loadProperties(resource);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read " + RESOURCE, e);
+            }
+            environment.getPropertySources().addLast(new PropertiesPropertySource(PROPERTY_SOURCE, built));
+            List<String> differences = differences(built, environment);
+            if (!differences.isEmpty()) {
+                throw new IllegalStateException("These properties choose beans and were fixed when the image was " +
+                        "built with Spring AOT; rebuild it with AOT_JVM_ARGUMENTS to change them: " +
+                        String.join(", ", differences));
+            }
+        }
+
+        @Override
+        public int getOrder() {
+            // After application.properties and the other config data are loaded
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
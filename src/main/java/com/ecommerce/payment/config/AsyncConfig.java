@@ -0,0 +1,71 @@
+package com.ecommerce.payment.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@Slf4j
+public class AsyncConfig {
+
+    /**
+     * Runs the blocking finalization step of a payment once the gateway has
+     * answered, so gateway callback threads never wait on JDBC.
+     */
+    @Bean
+    public AsyncTaskExecutor paymentExecutor(
+            @Value("${payment.executor.mode:PLATFORM}") ExecutorMode mode,
+            @Value("${payment.executor.core-pool-size:8}") int corePoolSize,
+            @Value("${payment.executor.max-pool-size:32}") int maxPoolSize,
+            @Value("${payment.executor.queue-capacity:1000}") int queueCapacity) {
+        log.info("Payment executor mode: {}", mode);
+        if (mode == ExecutorMode.VIRTUAL) {
+            // The JDBC pool is the real bound; virtual threads just wait for a connection
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("payment-vexec-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("payment-exec-");
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        // Never run finalization on the gateway callback thread: when the pool and queue are
+        // full, PaymentService releases the reservation and the call fails with UNAVAILABLE
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Producer threads for server-streaming history calls. Each stream holds a
+     * JDBC cursor (and its connection) until done, so the gRPC layer caps how
+     * many run at once with payment.history.stream.max-concurrent.
+     */
+    @Bean
+    public AsyncTaskExecutor historyStreamExecutor(
+            @Value("${payment.executor.mode:PLATFORM}") ExecutorMode mode,
+            @Value("${payment.history.stream.max-concurrent:16}") int maxConcurrentStreams) {
+        if (mode == ExecutorMode.VIRTUAL) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("history-stream-v-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("history-stream-");
+        executor.setCorePoolSize(maxConcurrentStreams);
+        executor.setMaxPoolSize(maxConcurrentStreams);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ecommerce.payment.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * The database the service writes to, looked up once at startup, for the
+ * few places that issue vendor-specific SQL. When it cannot be detected,
+ * callers fall back to standard SQL.
+ */
+@Component
+@Slf4j
+public class DatabaseProduct {
+
+    private final String name;
+
+    public DatabaseProduct(DataSource dataSource) {
+        String product = null;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            log.warn("Could not detect the database, using standard SQL: {}", e.getMessage());
+        }
+        this.name = product;
+    }
+
+    public boolean isPostgres() {
+        return "PostgreSQL".equals(name);
+    }
+}
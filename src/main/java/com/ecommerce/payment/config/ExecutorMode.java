@@ -0,0 +1,12 @@
+package com.ecommerce.payment.config;
+
+/**
+ * Threading model used for gRPC calls and payment finalization,
+ * selected with {@code payment.executor.mode}
+ */
+public enum ExecutorMode {
+    /** Bounded pools of platform threads */
+    PLATFORM,
+    /** One Java 21 virtual thread per task */
+    VIRTUAL
+}
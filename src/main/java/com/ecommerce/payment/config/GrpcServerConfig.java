@@ -0,0 +1,34 @@
+package com.ecommerce.payment.config;
+
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+@Slf4j
+public class GrpcServerConfig {
+
+    /**
+     * Executor that runs each gRPC call on its own virtual thread. Service
+     * code keeps its blocking JPA style; a call waiting on JDBC unmounts its
+     * carrier instead of occupying a pool thread.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "payment.executor.mode", havingValue = "VIRTUAL")
+    public ExecutorService grpcVirtualThreadExecutor() {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("grpc-vthread-", 0).factory());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "payment.executor.mode", havingValue = "VIRTUAL")
+    public GrpcServerConfigurer virtualThreadServerConfigurer(ExecutorService grpcVirtualThreadExecutor) {
+        log.info("gRPC server calls will run on virtual threads");
+        return serverBuilder -> serverBuilder.executor(grpcVirtualThreadExecutor);
+    }
+}
@@ -0,0 +1,26 @@
+package com.ecommerce.payment.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaConfig {
+
+    /**
+     * Turns on JDBC batching so multi-row writes (batched payments, receipts)
+     * go out as one round trip per statement shape. Explicit
+     * spring.jpa.properties.hibernate.* settings still win.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer(
+            @Value("${payment.jdbc.batch-size:50}") int batchSize) {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+        };
+    }
+}
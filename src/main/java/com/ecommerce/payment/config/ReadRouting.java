@@ -0,0 +1,41 @@
+package com.ecommerce.payment.config;
+
+/**
+ * Per-thread hint that pins reads to the primary, for callers that must see
+ * recent writes. Only consulted when replica routing is enabled; the hint
+ * must be in place before the transaction's first statement, which is when
+ * the connection is actually taken.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+    private static final Scope NO_OP = () -> {
+    };
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Closeable scope of a primary-only hint
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Pins reads on this thread to the primary until the returned scope is
+     * closed, if {@code condition} holds; nested scopes leave the outer one in charge
+     */
+    public static Scope primaryIf(boolean condition) {
+        if (!condition || PRIMARY.get() != null) {
+            return NO_OP;
+        }
+        PRIMARY.set(Boolean.TRUE);
+        return PRIMARY::remove;
+    }
+
+    static boolean primaryRequested() {
+        return PRIMARY.get() != null;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ecommerce.payment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single auto-configured DataSource with a primary pool plus
+ * one pool per read replica, routed by {@link ReplicaRoutingDataSource}.
+ * The primary keeps the spring.datasource.* settings; replicas share its
+ * credentials unless payment.datasource.replicas.username/password are set.
+ */
+@Configuration
+@ConditionalOnProperty(name = "payment.datasource.replicas.enabled", havingValue = "true")
+@Slf4j
+public class ReplicaRoutingConfig {
+
+    // Migrations go straight to the primary rather than through the routing proxy
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        return primary;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${payment.datasource.replicas.urls}") List<String> urls,
+            @Value("${payment.datasource.replicas.username:}") String username,
+            @Value("${payment.datasource.replicas.password:}") String password,
+            @Value("${payment.datasource.replicas.pool-size:10}") int poolSize,
+            @Value("${payment.datasource.replicas.max-lag:PT5S}") Duration maxLag,
+            @Value("${payment.datasource.replicas.lag-check-interval:PT1S}") Duration lagCheckInterval,
+            @Value("${payment.datasource.replicas.lag-query:" + POSTGRES_LAG_QUERY + "}") String lagQuery) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("payment.datasource.replicas.urls must list at least one replica");
+        }
+        List<HikariDataSource> pools = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + i);
+            pool.setJdbcUrl(urls.get(i).trim());
+            pool.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            pool.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+            pool.setMaximumPoolSize(poolSize);
+            pool.setReadOnly(true);
+            // Started lazily so an unreachable replica fails its lag check instead of startup
+            pool.setInitializationFailTimeout(-1);
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.add(pool);
+        }
+        log.info("Routing read-only transactions to {} replica(s), max lag {}", pools.size(), maxLag);
+        return new ReplicaRoutingDataSource(primaryDataSource, pools, lagQuery, maxLag, lagCheckInterval,
+                meterRegistry);
+    }
+
+    /**
+     * The DataSource JPA and everything else uses. Connections are taken at
+     * the first statement, after the transaction has declared itself read-only.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    // Seconds behind the primary; 0 when fully replayed, so an idle primary does not look like lag
+    static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+}
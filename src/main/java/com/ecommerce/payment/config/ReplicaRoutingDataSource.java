@@ -0,0 +1,166 @@
+package com.ecommerce.payment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to
+ * the primary. A replica counts as healthy while its last lag check answered
+ * within {@code maxLag} and that answer is itself no older than
+ * {@code maxLag}, so a stalled checker cannot keep a lagging replica in
+ * rotation; when none is, reads fall back to the primary. Lag checks run on
+ * their own thread, apart from the shared scheduler. Must sit behind a
+ * LazyConnectionDataSourceProxy so the choice is made at the first
+ * statement, once the transaction's read-only flag is known.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    static final String PRIMARY = "primary";
+
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService lagChecker;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicaPools,
+                                    String lagQuery, Duration maxLag, Duration checkInterval,
+                                    MeterRegistry registry) {
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-lag-check");
+            t.setDaemon(true);
+            return t;
+        });
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach(r -> targets.put(r.name, r.pool));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        for (Replica replica : replicas) {
+            Gauge.builder("payment.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .description("Replication lag seen by the last check, NaN when the replica did not answer")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+        this.primaryReads = Counter.builder("payment.datasource.reads")
+                .description("Read-only transactions by the pool that served them")
+                .tag("target", PRIMARY)
+                .register(registry);
+        this.replicaReads = Counter.builder("payment.datasource.reads")
+                .description("Read-only transactions by the pool that served them")
+                .tag("target", "replica")
+                .register(registry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+        lagChecker.scheduleWithFixedDelay(this::checkReplicas,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        Replica replica = ReadRouting.primaryRequested() ? null : nextHealthyReplica();
+        if (replica == null) {
+            primaryReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return replica.name;
+    }
+
+    /**
+     * Re-measures every replica's lag and updates which ones take reads
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            double lag;
+            try {
+                Double seconds = replica.jdbc.queryForObject(lagQuery, Double.class);
+                lag = seconds == null ? 0.0 : seconds;
+            } catch (RuntimeException e) {
+                lag = Double.NaN;
+                if (replica.healthy) {
+                    log.warn("Replica {} failed its lag check: {}", replica.name, e.getMessage());
+                }
+            }
+            boolean healthy = !Double.isNaN(lag) && lag * 1000 <= maxLag.toMillis();
+            if (healthy != replica.healthy) {
+                log.info("Replica {} {} reads (lag {} s)", replica.name, healthy ? "now takes" : "no longer takes", lag);
+            }
+            if (!Double.isNaN(lag)) {
+                replica.checkedAt = System.nanoTime();
+            }
+            replica.lagSeconds = lag;
+            replica.healthy = healthy;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        lagChecker.shutdownNow();
+        replicas.forEach(r -> r.pool.close());
+    }
+
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy && now - replica.checkedAt <= maxLag.toNanos()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static final class Replica {
+        final String name;
+        final HikariDataSource pool;
+        final JdbcTemplate jdbc;
+        volatile boolean healthy;
+        volatile double lagSeconds = Double.NaN;
+        // System.nanoTime() of the last lag check the replica answered
+        volatile long checkedAt;
+
+        Replica(HikariDataSource pool) {
+            this.name = pool.getPoolName();
+            this.pool = pool;
+            this.jdbc = new JdbcTemplate(pool);
+            this.jdbc.setQueryTimeout(2);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.payment.config;
+
+import com.ecommerce.payment.service.PricingEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Read-only actuator endpoint ({@code /actuator/taxrates}) showing the tax
+ * rates this node prices with. Rates change through payment.tax.rates-file,
+ * not through this endpoint, so all nodes and restarts agree on them.
+ */
+@Component
+@Endpoint(id = "taxrates")
+@RequiredArgsConstructor
+public class TaxRateEndpoint {
+
+    private final PricingEngine pricingEngine;
+
+    @ReadOperation
+    public Map<String, Object> rates() {
+        return Map.of(
+                "default", pricingEngine.getRateTable().getDefaultRate().value(),
+                "provinces", pricingEngine.getRateTable().asMap());
+    }
+}
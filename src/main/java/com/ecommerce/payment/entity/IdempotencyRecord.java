@@ -0,0 +1,47 @@
+package com.ecommerce.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Completed ProcessPayment response stored under the client's idempotency key
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord implements Persistable<String> {
+
+    // "<userId>:<client key>", so keys are scoped to the user that sent them
+    @Id
+    @Column(name = "idempotency_key", length = 160, updatable = false, nullable = false)
+    private String idempotencyKey;
+
+    // Serialized PaymentResponse protobuf
+    @Column(name = "response", nullable = false)
+    private byte[] response;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Records are insert-only; lets save() persist without a merge SELECT
+     */
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
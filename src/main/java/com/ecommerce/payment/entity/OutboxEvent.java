@@ -0,0 +1,38 @@
+package com.ecommerce.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Payment event waiting to be published, written in the same transaction as
+ * the status change it describes and deleted once the relay has published it
+ */
+@Entity
+@Table(name = "payment_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    // Pooled sequence so inserts batch without a sequence round trip per event
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_outbox_seq")
+    @SequenceGenerator(name = "payment_outbox_seq", sequenceName = "payment_outbox_seq", allocationSize = 100)
+    private Long id;
+
+    @Column(name = "payment_id", nullable = false, updatable = false)
+    private Integer paymentId;
+
+    // Serialized PaymentEvent protobuf without event_id, which the relay fills in from id
+    @Column(name = "payload", nullable = false, updatable = false)
+    private byte[] payload;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -26,6 +26,7 @@ public class Payment {
     @Enumerated(EnumType.STRING)
     @Builder.Default
     private PaymentStatus status = PaymentStatus.PENDING;
+    // Assigned by IdGenerator from block-reserved ranges of payment_id_seq
     @Column(name = "payment_id", updatable = false, nullable = false, unique = true)
     private Integer paymentId;
 
@@ -81,10 +82,6 @@ public class Payment {
         if (paymentStatus == null) {
             paymentStatus = PaymentStatus.PROCESSING;
         }
-        if (paymentId == null ) {
-            paymentId = java.util.concurrent.ThreadLocalRandom.current()
-                    .nextInt(100_000_000, Integer.MAX_VALUE);
-        }
     }
 
     @UpdateTimestamp
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
@@ -15,10 +16,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Receipt {
+public class Receipt implements Persistable<Integer> {
 
+    // Assigned by IdGenerator from receipt_id_seq before the row is written,
+    // so the id can be returned while the insert is still queued
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "receipt_id", updatable = false, nullable = false)
     private Integer receiptId;
 
@@ -31,6 +33,7 @@ public class Receipt {
     )
     private Payment payment;
 
+    // Assigned by IdGenerator from receipt_number_seq
     @Column(name = "receipt_number", unique = true, nullable = false)
     private String receiptNumber;
 
@@ -65,13 +68,21 @@ public class Receipt {
     @Column(name = "shipping_estimate_days")
     private Integer shippingEstimateDays;
 
+    // Encoded receipt_info and shipping_message of the PaymentResponse, fixed
+    // at issue time; null for receipts issued before snapshots existed
+    @Column(name = "receipt_snapshot")
+    private byte[] snapshot;
+
+    @Override
+    public Integer getId() {
+        return receiptId;
+    }
+
     /**
-     * Generates a formatted receipt number based on timestamp
+     * Receipts are insert-only; lets save() persist an assigned id without a merge SELECT
      */
-    @PrePersist
-    public void generateReceiptNumber() {
-        if (this.receiptNumber == null) {
-            this.receiptNumber = "RCP-" + System.currentTimeMillis();
-        }
+    @Override
+    public boolean isNew() {
+        return true;
     }
 }
@@ -0,0 +1,38 @@
+package com.ecommerce.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Running spend totals of one user over their completed payments, maintained
+ * by {@link com.ecommerce.payment.service.UserSpendTotals} in the same
+ * transaction as each status change instead of being summed on every read
+ */
+@Entity
+@Table(name = "user_payment_totals")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserPaymentTotals {
+
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    // Exact decimal so repeated increments do not drift the way a double sum would
+    @Column(name = "total_paid", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalPaid;
+
+    @Column(name = "payment_count", nullable = false)
+    private Long paymentCount;
+
+    @Column(name = "last_payment_at")
+    private LocalDateTime lastPaymentAt;
+}
@@ -0,0 +1,64 @@
+package com.ecommerce.payment.events;
+
+import com.ecommerce.payment.grpc.PaymentEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Appends events to a local file as length-delimited protobuf (read back with
+ * {@code PaymentEvent.parseDelimitedFrom}). Each batch is flushed, and
+ * optionally fsynced, before the relay deletes it from the outbox.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.events.sink", havingValue = "file")
+@Slf4j
+public class FilePaymentEventSink implements PaymentEventSink {
+
+    private final FileOutputStream file;
+    private final BufferedOutputStream out;
+    private final boolean fsync;
+
+    public FilePaymentEventSink(
+            @Value("${payment.events.file.path:payment-events.bin}") Path path,
+            @Value("${payment.events.file.fsync:true}") boolean fsync) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.file = new FileOutputStream(path.toFile(), true);
+        this.out = new BufferedOutputStream(file, 64 * 1024);
+        this.fsync = fsync;
+        log.info("Publishing payment events to {}", path.toAbsolutePath());
+    }
+
+    @Override
+    public synchronized void publish(List<PaymentEvent> events) {
+        try {
+            for (PaymentEvent event : events) {
+                event.writeDelimitedTo(out);
+            }
+            out.flush();
+            if (fsync) {
+                file.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append payment events", e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.ecommerce.payment.events;
+
+import com.ecommerce.payment.grpc.PaymentEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the most recently published events in memory, for local runs and
+ * tests. Older events are dropped once the capacity is reached.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.events.sink", havingValue = "memory", matchIfMissing = true)
+public class InMemoryPaymentEventSink implements PaymentEventSink {
+
+    private final int capacity;
+    private final ArrayDeque<PaymentEvent> events;
+
+    public InMemoryPaymentEventSink(@Value("${payment.events.memory.capacity:10000}") int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("In-memory event sink capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public synchronized void publish(List<PaymentEvent> batch) {
+        for (PaymentEvent event : batch) {
+            if (events.size() == capacity) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    /**
+     * Retained events, oldest first
+     */
+    public synchronized List<PaymentEvent> events() {
+        return new ArrayList<>(events);
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.payment.events;
+
+import com.ecommerce.payment.grpc.PaymentEvent;
+
+import java.util.List;
+
+/**
+ * SPI for the broker that payment events are published to (Kafka, SNS, ...).
+ * Called by the outbox relay with its batch still locked, so an
+ * implementation should return only once every event has been accepted and
+ * throw otherwise; the batch is then retried on the next poll.
+ */
+public interface PaymentEventSink {
+
+    /**
+     * Publishes the events in the given order
+     */
+    void publish(List<PaymentEvent> events);
+}
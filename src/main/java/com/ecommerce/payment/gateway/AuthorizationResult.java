@@ -0,0 +1,25 @@
+package com.ecommerce.payment.gateway;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of a {@link PaymentGateway} authorization
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class AuthorizationResult {
+
+    private final boolean approved;
+    private final String transactionReference;
+    private final String errorMessage;
+
+    public static AuthorizationResult approved(String transactionReference) {
+        return new AuthorizationResult(true, transactionReference, null);
+    }
+
+    public static AuthorizationResult declined(String errorMessage) {
+        return new AuthorizationResult(false, null, errorMessage);
+    }
+}
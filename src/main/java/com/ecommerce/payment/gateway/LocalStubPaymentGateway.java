@@ -0,0 +1,105 @@
+package com.ecommerce.payment.gateway;
+
+import com.ecommerce.payment.entity.Payment;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a real card processor. Answers after a simulated
+ * network latency without holding the caller's thread, and declines a
+ * configurable fraction of authorizations.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.gateway.type", havingValue = "stub", matchIfMissing = true)
+@Slf4j
+public class LocalStubPaymentGateway implements PaymentGateway {
+
+    public enum LatencyDistribution {
+        FIXED,
+        UNIFORM,
+        EXPONENTIAL
+    }
+
+    private final LatencyDistribution distribution;
+    private final long minLatencyMicros;
+    private final long maxLatencyMicros;
+    private final double failureRate;
+    private final ScheduledExecutorService scheduler;
+
+    public LocalStubPaymentGateway(
+            @Value("${payment.gateway.stub.latency-distribution:FIXED}") LatencyDistribution distribution,
+            @Value("${payment.gateway.stub.latency-min-ms:500}") long minLatencyMs,
+            @Value("${payment.gateway.stub.latency-max-ms:500}") long maxLatencyMs,
+            @Value("${payment.gateway.stub.failure-rate:0.0}") double failureRate) {
+        if (minLatencyMs < 0 || maxLatencyMs < minLatencyMs) {
+            throw new IllegalArgumentException("Gateway stub latency bounds must satisfy 0 <= min <= max");
+        }
+        if (failureRate < 0.0 || failureRate > 1.0) {
+            throw new IllegalArgumentException("Gateway stub failure rate must be between 0 and 1");
+        }
+        this.distribution = distribution;
+        this.minLatencyMicros = TimeUnit.MILLISECONDS.toMicros(minLatencyMs);
+        this.maxLatencyMicros = TimeUnit.MILLISECONDS.toMicros(maxLatencyMs);
+        this.failureRate = failureRate;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-gateway-stub");
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Local stub payment gateway: {} latency {}-{} ms, failure rate {}",
+                distribution, minLatencyMs, maxLatencyMs, failureRate);
+    }
+
+    @Override
+    public CompletableFuture<AuthorizationResult> authorize(Payment payment) {
+        log.info("Simulating payment processing for payment ID: {}", payment.getPaymentId());
+
+        long delayMicros = nextLatencyMicros();
+        if (delayMicros == 0) {
+            return CompletableFuture.completedFuture(decide());
+        }
+
+        CompletableFuture<AuthorizationResult> future = new CompletableFuture<>();
+        scheduler.schedule(() -> future.complete(decide()), delayMicros, TimeUnit.MICROSECONDS);
+        return future;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private AuthorizationResult decide() {
+        if (failureRate > 0.0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            return AuthorizationResult.declined("Payment processing failed");
+        }
+        return AuthorizationResult.approved("TXN-" + System.currentTimeMillis());
+    }
+
+    private long nextLatencyMicros() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (distribution) {
+            case UNIFORM:
+                return minLatencyMicros == maxLatencyMicros
+                        ? minLatencyMicros
+                        : random.nextLong(minLatencyMicros, maxLatencyMicros + 1);
+            case EXPONENTIAL:
+                // min is the floor, the midpoint of [min, max] is the mean, max caps the tail
+                double mean = (maxLatencyMicros - minLatencyMicros) / 2.0;
+                long tail = (long) (-mean * Math.log(1.0 - random.nextDouble()));
+                return Math.min(maxLatencyMicros, minLatencyMicros + tail);
+            case FIXED:
+            default:
+                return minLatencyMicros;
+        }
+    }
+}
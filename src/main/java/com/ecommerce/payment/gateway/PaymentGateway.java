@@ -0,0 +1,18 @@
+package com.ecommerce.payment.gateway;
+
+import com.ecommerce.payment.entity.Payment;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * SPI for the external card processor that authorizes a reserved payment.
+ * Implementations must not block the calling thread; the returned future
+ * completes once the processor has answered.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Requests authorization of the given payment
+     */
+    CompletableFuture<AuthorizationResult> authorize(Payment payment);
+}
@@ -0,0 +1,68 @@
+package com.ecommerce.payment.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking, flow-controlled writer for a server-streaming call. {@link #send}
+ * parks the producing thread until the transport can take another message,
+ * so a slow client slows the producer down instead of filling the heap.
+ * Must be created on the call's handler thread and used from a different one,
+ * since readiness callbacks are delivered on the handler's executor.
+ */
+final class FlowControlledSender<T> {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private volatile boolean cancelled;
+
+    FlowControlledSender(ServerCallStreamObserver<T> observer) {
+        this.observer = observer;
+        observer.setOnReadyHandler(this::signal);
+        observer.setOnCancelHandler(() -> {
+            cancelled = true;
+            signal();
+        });
+    }
+
+    /**
+     * Sends one message once the call is ready for it
+     *
+     * @throws io.grpc.StatusRuntimeException with CANCELLED if the client went away
+     */
+    void send(T message) {
+        lock.lock();
+        try {
+            while (!cancelled && !observer.isReady()) {
+                ready.await(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Status.CANCELLED.withDescription("Interrupted while waiting for the client").asRuntimeException();
+        } finally {
+            lock.unlock();
+        }
+        if (cancelled) {
+            throw Status.CANCELLED.withDescription("Client cancelled the stream").asRuntimeException();
+        }
+        observer.onNext(message);
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.payment.grpc;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes {@code grpc.server.calls.in_flight{service,method}}, the number of
+ * calls currently being processed. Latency and status codes per method come
+ * from the starter's MetricCollectingServerInterceptor
+ * ({@code grpc.server.processing.duration}).
+ */
+@GrpcGlobalServerInterceptor
+public class InFlightCallsInterceptor implements ServerInterceptor {
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public InFlightCallsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        AtomicInteger counter = counterFor(call.getMethodDescriptor());
+        counter.incrementAndGet();
+        try {
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+                // gRPC calls exactly one of onComplete / onCancel
+                @Override
+                public void onComplete() {
+                    counter.decrementAndGet();
+                    super.onComplete();
+                }
+
+                @Override
+                public void onCancel() {
+                    counter.decrementAndGet();
+                    super.onCancel();
+                }
+            };
+        } catch (RuntimeException e) {
+            counter.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private AtomicInteger counterFor(MethodDescriptor<?, ?> method) {
+        AtomicInteger counter = inFlight.get(method.getFullMethodName());
+        if (counter != null) {
+            return counter;
+        }
+        return inFlight.computeIfAbsent(method.getFullMethodName(), name -> {
+            AtomicInteger created = new AtomicInteger();
+            Gauge.builder("grpc.server.calls.in_flight", created, AtomicInteger::get)
+                    .description("gRPC calls currently being processed")
+                    .tag("service", String.valueOf(method.getServiceName()))
+                    .tag("method", method.getBareMethodName())
+                    .register(registry);
+            return created;
+        });
+    }
+}
@@ -1,12 +1,23 @@
 package com.ecommerce.payment.grpc;
 
 import com.ecommerce.payment.service.PaymentService;
+import com.ecommerce.payment.service.RevenueReports;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @GrpcService
 @RequiredArgsConstructor
@@ -14,6 +25,21 @@ import java.util.List;
 public class PaymentGrpcServiceImpl extends PaymentServiceGrpc.PaymentServiceImplBase {
 
     private final PaymentService paymentService;
+    private final RevenueReports revenueReports;
+
+    @Qualifier("historyStreamExecutor")
+    private final AsyncTaskExecutor historyStreamExecutor;
+
+    @Value("${payment.batch.max-size:500}")
+    private int maxBatchSize;
+
+    @Value("${payment.pricing.batch.max-size:1000}")
+    private int maxPricingBatchSize;
+
+    @Value("${payment.history.stream.max-concurrent:16}")
+    private int maxConcurrentStreams;
+
+    private final AtomicInteger activeHistoryStreams = new AtomicInteger();
 
     /**
      * Process payment - Main endpoint for Use Case 5
@@ -28,26 +54,23 @@ public class PaymentGrpcServiceImpl extends PaymentServiceGrpc.PaymentServiceImp
             responseObserver.onCompleted();
             return;
         }
-        try {
-            PaymentResponse response = paymentService.processPayment(request);
-            if (response.getTransactionDate().isBlank()) {
-                String now = java.time.LocalDateTime.now()
-                        .format(java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                response = PaymentResponse.newBuilder(response)
-                        .setTransactionDate(now)
-                        .build();
+        paymentService.processPayment(request).whenComplete((response, e) -> {
+            if (PaymentService.isRejected(e)) {
+                responseObserver.onError(overloaded());
+                return;
             }
-
-            responseObserver.onNext(response);
+            if (e != null) {
+                log.error("Error in ProcessPayment gRPC call", e);
+                String msg = "An error occurred while processing your payment: " + e.getMessage();
+                responseObserver.onNext(failureResponse(msg));
+                responseObserver.onCompleted();
+                return;
+            }
+            responseObserver.onNext(withTransactionDate(response));
             responseObserver.onCompleted();
 
             log.info("ProcessPayment gRPC call completed successfully");
-        } catch (Exception e) {
-            log.error("Error in ProcessPayment gRPC call", e);
-            String msg = "An error occurred while processing your payment: " + e.getMessage();
-            responseObserver.onNext(failureResponse(msg));
-            responseObserver.onCompleted();
-        }
+        });
     }
 
     /**
@@ -87,6 +110,30 @@ public class PaymentGrpcServiceImpl extends PaymentServiceGrpc.PaymentServiceImp
         }
     }
 
+    /**
+     * Price a batch of items - one result per item, in request order
+     */
+    @Override
+    public void calculateTotalCosts(TotalCostBatchRequest request,
+                                    StreamObserver<TotalCostBatchResponse> responseObserver) {
+        if (request.getItemsCount() > maxPricingBatchSize) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Batch size " + request.getItemsCount()
+                            + " exceeds the limit of " + maxPricingBatchSize)
+                    .asRuntimeException());
+            return;
+        }
+        try {
+            responseObserver.onNext(TotalCostBatchResponse.newBuilder()
+                    .addAllResults(paymentService.totalCosts(request.getItemsList()))
+                    .build());
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("Error in CalculateTotalCosts", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
     /**
      * Get payment history for a user
      */
@@ -96,27 +143,221 @@ public class PaymentGrpcServiceImpl extends PaymentServiceGrpc.PaymentServiceImp
         log.info("Received gRPC GetPaymentHistory request for user: {}", request.getUserId());
 
         try {
-            List<PaymentResponse> payments = paymentService.getPaymentHistory(
+            PaymentHistoryResponse response = paymentService.getPaymentHistory(
                     userId,
                     request.getPage(),
-                    request.getSize()
+                    request.getSize(),
+                    request.getCursor()
             );
 
-            PaymentHistoryResponse response = PaymentHistoryResponse.newBuilder()
-                    .addAllPayments(payments)
-                    .setTotalCount(payments.size())
-                    .build();
-
             responseObserver.onNext(response);
             responseObserver.onCompleted();
 
             log.info("GetPaymentHistory gRPC call completed successfully");
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected GetPaymentHistory request: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
         } catch (Exception e) {
             log.error("Error in GetPaymentHistory gRPC call", e);
             responseObserver.onError(e);
         }
     }
 
+    /**
+     * Stream a user's whole payment history. The database cursor is walked on
+     * a separate thread that only sends when the client is ready for more.
+     */
+    @Override
+    public void streamPaymentHistory(PaymentHistoryRequest request, StreamObserver<PaymentResponse> responseObserver) {
+        int userId = request.getUserId();
+        log.info("Received gRPC StreamPaymentHistory request for user: {}", userId);
+
+        if (activeHistoryStreams.incrementAndGet() > maxConcurrentStreams) {
+            activeHistoryStreams.decrementAndGet();
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many concurrent history streams, retry later")
+                    .asRuntimeException());
+            return;
+        }
+
+        FlowControlledSender<PaymentResponse> sender =
+                new FlowControlledSender<>((ServerCallStreamObserver<PaymentResponse>) responseObserver);
+        try {
+            historyStreamExecutor.execute(() -> {
+                try {
+                    paymentService.streamPaymentHistory(userId, sender::send);
+                    responseObserver.onCompleted();
+                    log.info("StreamPaymentHistory gRPC call completed successfully");
+                } catch (Exception e) {
+                    if (sender.isCancelled()) {
+                        log.info("StreamPaymentHistory for user {} cancelled by client", userId);
+                    } else {
+                        log.error("Error in StreamPaymentHistory gRPC call", e);
+                        responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+                    }
+                } finally {
+                    activeHistoryStreams.decrementAndGet();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            activeHistoryStreams.decrementAndGet();
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many concurrent history streams, retry later")
+                    .asRuntimeException());
+        }
+    }
+
+    /**
+     * Process a batch of payments - one result per request, in request order
+     */
+    @Override
+    public void processPayments(PaymentBatchRequest request, StreamObserver<PaymentBatchResponse> responseObserver) {
+        log.info("Received gRPC ProcessPayments request with {} payments", request.getPaymentsCount());
+        processBatch(request.getPaymentsList(), responseObserver);
+    }
+
+    /**
+     * Client-streaming variant of ProcessPayments; the batch is processed once the client half-closes.
+     * A stream that sends more than payment.batch.max-size payments fails as soon as it does.
+     */
+    @Override
+    public StreamObserver<PaymentRequest> processPaymentStream(StreamObserver<PaymentBatchResponse> responseObserver) {
+        List<PaymentRequest> requests = new ArrayList<>();
+        return new StreamObserver<>() {
+            // Set once the stream went over the limit; later messages and the half-close are ignored
+            private boolean rejected;
+
+            @Override
+            public void onNext(PaymentRequest request) {
+                if (rejected) {
+                    return;
+                }
+                if (requests.size() == maxBatchSize) {
+                    rejected = true;
+                    requests.clear();
+                    responseObserver.onError(Status.INVALID_ARGUMENT
+                            .withDescription("Batch size exceeds the limit of " + maxBatchSize)
+                            .asRuntimeException());
+                    return;
+                }
+                requests.add(request);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("ProcessPaymentStream cancelled by client after {} payments", requests.size(), t);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (rejected) {
+                    return;
+                }
+                log.info("Received gRPC ProcessPaymentStream with {} payments", requests.size());
+                processBatch(requests, responseObserver);
+            }
+        };
+    }
+
+    /**
+     * Spend totals of a user over their completed payments
+     */
+    @Override
+    public void getUserSpendSummary(UserSpendSummaryRequest request,
+                                    StreamObserver<UserSpendSummaryResponse> responseObserver) {
+        if (request.getUserId() <= 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Missing or invalid userId.")
+                    .asRuntimeException());
+            return;
+        }
+        try {
+            responseObserver.onNext(paymentService.getUserSpendSummary(request.getUserId()));
+            responseObserver.onCompleted();
+        } catch (Exception e) {
+            log.error("Error in GetUserSpendSummary gRPC call", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    /**
+     * Revenue, HST and payment counts over a date range, per day or hour
+     */
+    @Override
+    public void getRevenueReport(RevenueReportRequest request, StreamObserver<RevenueReportResponse> responseObserver) {
+        log.info("Received gRPC GetRevenueReport request from {} to {} by {}",
+                request.getFrom(), request.getTo(), request.getBucket());
+        try {
+            responseObserver.onNext(revenueReports.report(request.getFrom(), request.getTo(), request.getBucket()));
+            responseObserver.onCompleted();
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected GetRevenueReport request: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        } catch (Exception e) {
+            log.error("Error in GetRevenueReport gRPC call", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    private void processBatch(List<PaymentRequest> requests, StreamObserver<PaymentBatchResponse> responseObserver) {
+        if (requests.size() > maxBatchSize) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Batch size " + requests.size() + " exceeds the limit of " + maxBatchSize)
+                    .asRuntimeException());
+            return;
+        }
+
+        PaymentResponse[] results = new PaymentResponse[requests.size()];
+        List<Integer> validIndexes = new ArrayList<>(requests.size());
+        List<PaymentRequest> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            String validationError = validateRequest(requests.get(i));
+            if (validationError != null) {
+                results[i] = failureResponse(validationError);
+            } else {
+                validIndexes.add(i);
+                valid.add(requests.get(i));
+            }
+        }
+
+        paymentService.processPayments(valid).whenComplete((responses, e) -> {
+            if (PaymentService.isRejected(e)) {
+                responseObserver.onError(overloaded());
+                return;
+            }
+            for (int k = 0; k < validIndexes.size(); k++) {
+                results[validIndexes.get(k)] = e != null
+                        ? failureResponse("An error occurred while processing your payment: " + e.getMessage())
+                        : withTransactionDate(responses.get(k));
+            }
+            if (e != null) {
+                log.error("Error in ProcessPayments gRPC call", e);
+            }
+
+            responseObserver.onNext(PaymentBatchResponse.newBuilder()
+                    .addAllResults(Arrays.asList(results))
+                    .build());
+            responseObserver.onCompleted();
+        });
+    }
+
+    private static StatusRuntimeException overloaded() {
+        return Status.UNAVAILABLE
+                .withDescription("Payment service is overloaded, retry later")
+                .asRuntimeException();
+    }
+
+    private PaymentResponse withTransactionDate(PaymentResponse response) {
+        if (!response.getTransactionDate().isBlank()) {
+            return response;
+        }
+        String now = java.time.LocalDateTime.now()
+                .format(java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        return PaymentResponse.newBuilder(response)
+                .setTransactionDate(now)
+                .build();
+    }
+
     private String validateRequest(PaymentRequest r) {
         if (!r.hasUserInfo()) return "Missing user information.";
         if (r.getUserInfo().getUserId() <= 0) return "Missing or invalid userId.";
@@ -128,6 +369,7 @@ public class PaymentGrpcServiceImpl extends PaymentServiceGrpc.PaymentServiceImp
         if (r.getCreditCardInfo().getNameOnCard().isBlank()) return "Missing name on card.";
         if (r.getCreditCardInfo().getExpiryDate().isBlank()) return "Missing expiry date.";
         if (r.getCreditCardInfo().getSecurityCode().isBlank()) return "Missing security code.";
+        if (r.getIdempotencyKey().length() > 128) return "idempotencyKey must be at most 128 characters.";
         return null;
     }
     private PaymentResponse failureResponse(String message) {
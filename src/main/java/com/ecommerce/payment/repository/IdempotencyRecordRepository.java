@@ -0,0 +1,21 @@
+package com.ecommerce.payment.repository;
+
+import com.ecommerce.payment.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Delete records created before the cutoff
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
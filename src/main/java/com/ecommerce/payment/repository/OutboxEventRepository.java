@@ -0,0 +1,27 @@
+package com.ecommerce.payment.repository;
+
+import com.ecommerce.payment.entity.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Oldest pending events, locked FOR UPDATE SKIP LOCKED so concurrent
+     * relays on other nodes take disjoint batches instead of waiting.
+     * A lock timeout of -2 is Hibernate's SKIP_LOCKED marker.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e ORDER BY e.id")
+    List<OutboxEvent> lockNextBatch(Limit limit);
+}
@@ -1,10 +1,15 @@
 package com.ecommerce.payment.repository;
 
 import com.ecommerce.payment.entity.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,7 +17,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Collection;
-import java.util.Optional;
+import java.util.stream.Stream;
 
 
 
@@ -25,6 +30,72 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
     Optional<Payment> findTopByUserIdAndItemIdAndPaymentStatusOrderByCreatedAtDesc(
             Integer userId, Integer itemId, Payment.PaymentStatus status);
 
+    /**
+     * Set-based duplicate check for a batch; callers match exact (user, item) pairs
+     */
+    List<Payment> findByUserIdInAndItemIdInAndPaymentStatusIn(
+            Collection<Integer> userIds, Collection<Integer> itemIds, Collection<Payment.PaymentStatus> statuses);
+
+    /**
+     * Moves a PROCESSING payment to its final status with a single UPDATE, without
+     * loading it first. Returns 0 when the payment is no longer PROCESSING.
+     */
+    @Modifying
+    @Query("UPDATE Payment p SET p.paymentStatus = :status, p.transactionReference = :reference, " +
+            "p.paymentErrorMessage = :errorMessage, p.updatedAt = :updatedAt " +
+            "WHERE p.id = :id AND p.paymentStatus = com.ecommerce.payment.entity.Payment$PaymentStatus.PROCESSING")
+    int finalizeProcessing(@Param("id") String id,
+                           @Param("status") Payment.PaymentStatus status,
+                           @Param("reference") String transactionReference,
+                           @Param("errorMessage") String errorMessage,
+                           @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Resolves an id that may be a payment id or a receipt id in one round trip,
+     * returning the payment with its receipt. Both branches compare on
+     * payments.payment_id, so the unique index serves either kind of id; a
+     * payment-id match is ordered ahead of a receipt-id match.
+     */
+    @Query("SELECT new com.ecommerce.payment.repository.PaymentWithReceipt(p, r) " +
+            "FROM Payment p LEFT JOIN Receipt r ON r.payment = p LEFT JOIN FETCH r.payment " +
+            "WHERE p.paymentId = :id " +
+            "OR p.paymentId = (SELECT r2.payment.paymentId FROM Receipt r2 WHERE r2.receiptId = :id) " +
+            "ORDER BY CASE WHEN p.paymentId = :id THEN 0 ELSE 1 END")
+    List<PaymentWithReceipt> findByPaymentOrReceiptId(@Param("id") int id, Limit limit);
+
+    /**
+     * {@link #findByPaymentOrReceiptId} limited to payments created, and receipts
+     * issued, at or after {@code since}, so a month-partitioned table only
+     * searches the partitions from there on
+     */
+    @Query("SELECT new com.ecommerce.payment.repository.PaymentWithReceipt(p, r) " +
+            "FROM Payment p LEFT JOIN Receipt r ON r.payment = p AND r.receiptDate >= :since " +
+            "LEFT JOIN FETCH r.payment " +
+            "WHERE p.createdAt >= :since AND (p.paymentId = :id " +
+            "OR p.paymentId = (SELECT r2.payment.paymentId FROM Receipt r2 " +
+            "WHERE r2.receiptId = :id AND r2.receiptDate >= :since)) " +
+            "ORDER BY CASE WHEN p.paymentId = :id THEN 0 ELSE 1 END")
+    List<PaymentWithReceipt> findByPaymentOrReceiptIdSince(@Param("id") int id,
+                                                           @Param("since") LocalDateTime since,
+                                                           Limit limit);
+
+    /**
+     * Completed payments updated within [from, to] that have no receipt row
+     */
+    @Query("SELECT p FROM Payment p " +
+            "WHERE p.paymentStatus = com.ecommerce.payment.entity.Payment$PaymentStatus.COMPLETED " +
+            "AND p.updatedAt BETWEEN :from AND :to " +
+            "AND NOT EXISTS (SELECT r FROM Receipt r WHERE r.payment = p)")
+    List<Payment> findCompletedWithoutReceipt(@Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to,
+                                              Limit limit);
+
+    /**
+     * Payment ids already used within [from, to], checked when reserving an id block
+     */
+    @Query("SELECT p.paymentId FROM Payment p WHERE p.paymentId BETWEEN :from AND :to")
+    List<Integer> findPaymentIdsBetween(@Param("from") int from, @Param("to") int to);
+
     /**
      * Find payment by payment ID
      */
@@ -40,6 +111,50 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
      */
     Page<Payment> findByUserId(Integer userId, Pageable pageable);
 
+    /**
+     * Payment history page with receipts fetched in the same query (offset paging).
+     * Receipt.payment joins on the non-key payment_id column, so it is fetch-joined
+     * here; otherwise Hibernate would load it with one extra query per receipt.
+     */
+    @Query("SELECT new com.ecommerce.payment.repository.PaymentWithReceipt(p, r) " +
+            "FROM Payment p LEFT JOIN Receipt r ON r.payment = p LEFT JOIN FETCH r.payment " +
+            "WHERE p.userId = :userId " +
+            "ORDER BY p.createdAt DESC, p.paymentId DESC")
+    List<PaymentWithReceipt> findHistoryByUserId(@Param("userId") Integer userId, Pageable pageable);
+
+    /**
+     * Payment history page with receipts, continuing after a (createdAt, paymentId) keyset position
+     */
+    @Query("SELECT new com.ecommerce.payment.repository.PaymentWithReceipt(p, r) " +
+            "FROM Payment p LEFT JOIN Receipt r ON r.payment = p LEFT JOIN FETCH r.payment " +
+            "WHERE p.userId = :userId " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.paymentId < :paymentId)) " +
+            "ORDER BY p.createdAt DESC, p.paymentId DESC")
+    List<PaymentWithReceipt> findHistoryByUserIdBefore(
+            @Param("userId") Integer userId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("paymentId") Integer paymentId,
+            Limit limit);
+
+    /**
+     * Whole payment history of a user with receipts, read through a JDBC
+     * cursor in fetch-size chunks. Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.ecommerce.payment.repository.PaymentWithReceipt(p, r) " +
+            "FROM Payment p LEFT JOIN Receipt r ON r.payment = p LEFT JOIN FETCH r.payment " +
+            "WHERE p.userId = :userId " +
+            "ORDER BY p.createdAt DESC, p.paymentId DESC")
+    Stream<PaymentWithReceipt> streamHistoryByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Count all payments of a user
+     */
+    long countByUserId(Integer userId);
+
     /**
      * Find payments by status
      */
@@ -51,7 +166,8 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
     List<Payment> findByUserIdAndPaymentStatus(Integer userId, Payment.PaymentStatus status);
 
     /**
-     * Find payments within a date range
+     * Find payments within a date range. Loads every entity in the range;
+     * reports over a range should use {@link #revenueByDay} / {@link #revenueByHour}.
      */
     @Query("SELECT p FROM Payment p WHERE p.createdAt BETWEEN :startDate AND :endDate")
     List<Payment> findPaymentsBetweenDates(
@@ -59,13 +175,37 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
             @Param("endDate") LocalDateTime endDate
     );
 
+    /**
+     * Payments created in [from, to) grouped by day, status, shipping type and
+     * card type; the result size depends on the number of groups, not payments
+     */
+    @Query("SELECT new com.ecommerce.payment.repository.RevenueRow(" +
+            "cast(p.createdAt as LocalDate), p.paymentStatus, p.shippingType, p.creditCardInfo.cardType, " +
+            "count(p), sum(p.totalAmount), sum(p.hstAmount)) " +
+            "FROM Payment p WHERE p.createdAt >= :from AND p.createdAt < :to " +
+            "GROUP BY cast(p.createdAt as LocalDate), p.paymentStatus, p.shippingType, p.creditCardInfo.cardType")
+    List<RevenueRow> revenueByDay(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Same as {@link #revenueByDay}, additionally grouped by hour of day
+     */
+    @Query("SELECT new com.ecommerce.payment.repository.RevenueRow(" +
+            "cast(p.createdAt as LocalDate), extract(hour from p.createdAt), " +
+            "p.paymentStatus, p.shippingType, p.creditCardInfo.cardType, " +
+            "count(p), sum(p.totalAmount), sum(p.hstAmount)) " +
+            "FROM Payment p WHERE p.createdAt >= :from AND p.createdAt < :to " +
+            "GROUP BY cast(p.createdAt as LocalDate), extract(hour from p.createdAt), " +
+            "p.paymentStatus, p.shippingType, p.creditCardInfo.cardType")
+    List<RevenueRow> revenueByHour(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
     /**
      * Find payments for a specific item
      */
     List<Payment> findByItemId(Integer itemId);
 
     /**
-     * Get total amount paid by a user
+     * Get total amount paid by a user. Sums the whole history on every call;
+     * UserSpendTotals keeps the same figure as a single row.
      */
     @Query("SELECT SUM(p.totalAmount) FROM Payment p WHERE p.userId = :userId AND p.paymentStatus = 'COMPLETED'")
     Double getTotalAmountPaidByUser(@Param("userId") Integer userId);
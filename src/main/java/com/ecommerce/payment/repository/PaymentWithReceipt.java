@@ -0,0 +1,10 @@
+package com.ecommerce.payment.repository;
+
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.entity.Receipt;
+
+/**
+ * A payment fetched together with its receipt; the receipt is null when none was issued
+ */
+public record PaymentWithReceipt(Payment payment, Receipt receipt) {
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,6 +29,12 @@ public interface ReceiptRepository extends JpaRepository<Receipt, Integer> {
     @Query("SELECT r FROM Receipt r WHERE r.payment.paymentId = :paymentId")
     Optional<Receipt> findByPaymentId(@Param("paymentId") Integer paymentId);
 
+    /**
+     * Find receipts for several payment IDs in one query
+     */
+    @Query("SELECT r FROM Receipt r WHERE r.payment.paymentId IN :paymentIds")
+    List<Receipt> findByPaymentIdIn(@Param("paymentIds") Collection<Integer> paymentIds);
+
     /**
      * Find all receipts for a specific user (through payment relationship)
      */
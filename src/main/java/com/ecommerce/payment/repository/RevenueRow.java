@@ -0,0 +1,19 @@
+package com.ecommerce.payment.repository;
+
+import com.ecommerce.payment.entity.Payment;
+
+import java.time.LocalDate;
+
+/**
+ * Payments of one day (and hour, for hourly reports) sharing status, shipping
+ * type and card type, aggregated by the database; hour is null in daily rows
+ */
+public record RevenueRow(LocalDate day, Integer hour, Payment.PaymentStatus status,
+                         Payment.ShippingType shippingType, String cardType,
+                         long payments, Double totalAmount, Double hstAmount) {
+
+    public RevenueRow(LocalDate day, Payment.PaymentStatus status, Payment.ShippingType shippingType,
+                      String cardType, long payments, Double totalAmount, Double hstAmount) {
+        this(day, null, status, shippingType, cardType, payments, totalAmount, hstAmount);
+    }
+}
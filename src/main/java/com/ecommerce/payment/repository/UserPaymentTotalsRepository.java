@@ -0,0 +1,33 @@
+package com.ecommerce.payment.repository;
+
+import com.ecommerce.payment.entity.UserPaymentTotals;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface UserPaymentTotalsRepository extends JpaRepository<UserPaymentTotals, Integer> {
+
+    /**
+     * Adds to a user's totals in one statement, creating the row on first use.
+     * ON CONFLICT keeps two first payments of the same user from racing on the
+     * insert.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_payment_totals (user_id, total_paid, payment_count, last_payment_at) " +
+            "VALUES (:userId, :amount, :count, :paidAt) " +
+            "ON CONFLICT (user_id) DO UPDATE SET " +
+            "total_paid = user_payment_totals.total_paid + EXCLUDED.total_paid, " +
+            "payment_count = user_payment_totals.payment_count + EXCLUDED.payment_count, " +
+            "last_payment_at = GREATEST(user_payment_totals.last_payment_at, EXCLUDED.last_payment_at)",
+            nativeQuery = true)
+    int addPostgres(@Param("userId") int userId,
+                    @Param("amount") BigDecimal amount,
+                    @Param("count") long count,
+                    @Param("paidAt") LocalDateTime paidAt);
+}
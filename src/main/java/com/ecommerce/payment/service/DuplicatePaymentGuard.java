@@ -0,0 +1,103 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.grpc.PaymentResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Single-flight coordinator for payments of the same (userId, itemId).
+ * The first request runs; requests arriving while it is in flight wait for
+ * its outcome instead of racing it through the duplicate check. A retry with
+ * the running request's idempotency key gets its response unchanged, as it
+ * would once the payment is finalized. Covers one node only - the unique
+ * partial index on payments is the cross-node guard, or, once payments is
+ * partitioned, the advisory lock taken by the reservation.
+ */
+@Component
+public class DuplicatePaymentGuard {
+
+    private final Map<Long, Flight> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+    private final Counter dbConflicts;
+    private final Timer followerWait;
+
+    public DuplicatePaymentGuard(MeterRegistry registry) {
+        Gauge.builder("payment.duplicate_guard.in_flight", inFlight, Map::size)
+                .description("Payments currently holding a (user, item) slot")
+                .register(registry);
+        this.coalesced = Counter.builder("payment.duplicate_guard.coalesced")
+                .description("Requests that waited on an in-flight payment for the same user and item")
+                .register(registry);
+        this.dbConflicts = Counter.builder("payment.duplicate_guard.db_conflicts")
+                .description("Reservations rejected by the unique (user, item) index")
+                .register(registry);
+        this.followerWait = Timer.builder("payment.duplicate_guard.wait")
+                .description("Time a coalesced request waited for the in-flight payment")
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code attempt} unless a payment for the same user and item is
+     * already in flight, in which case that payment's outcome is returned:
+     * unchanged when both requests carry the same non-empty idempotency key,
+     * otherwise through {@code followerView}
+     */
+    public CompletableFuture<PaymentResponse> execute(int userId, int itemId, String idempotencyKey,
+                                                      Supplier<CompletableFuture<PaymentResponse>> attempt,
+                                                      UnaryOperator<PaymentResponse> followerView) {
+        long key = pairKey(userId, itemId);
+        CompletableFuture<PaymentResponse> leader = new CompletableFuture<>();
+        Flight flight = new Flight(idempotencyKey, leader);
+        Flight running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            boolean retry = !idempotencyKey.isEmpty() && idempotencyKey.equals(running.idempotencyKey());
+            long start = System.nanoTime();
+            return running.outcome().thenApply(response -> {
+                followerWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return retry ? response : followerView.apply(response);
+            });
+        }
+
+        CompletableFuture<PaymentResponse> result;
+        try {
+            result = attempt.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((response, e) -> {
+            // Release the slot first; the outcome is committed, so later requests see it in the DB
+            inFlight.remove(key, flight);
+            if (e != null) {
+                leader.completeExceptionally(e);
+            } else {
+                leader.complete(response);
+            }
+        });
+        return leader;
+    }
+
+    /**
+     * Counts a reservation that lost a race with another node on the unique index
+     */
+    public void recordConflict() {
+        dbConflicts.increment();
+    }
+
+    static long pairKey(int userId, int itemId) {
+        return ((long) userId << 32) | (itemId & 0xFFFFFFFFL);
+    }
+
+    private record Flight(String idempotencyKey, CompletableFuture<PaymentResponse> outcome) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.ecommerce.payment.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for payment history, positioned on the
+ * (created_at, payment_id) of the last row a client has seen
+ */
+record HistoryCursor(LocalDateTime createdAt, int paymentId) {
+
+    private static final char SEPARATOR = '|';
+
+    String encode() {
+        String raw = createdAt.toString() + SEPARATOR + paymentId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    static HistoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf(SEPARATOR);
+            if (sep < 0) {
+                throw new IllegalArgumentException("Malformed history cursor");
+            }
+            return new HistoryCursor(
+                    LocalDateTime.parse(raw.substring(0, sep)),
+                    Integer.parseInt(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed history cursor", e);
+        }
+    }
+}
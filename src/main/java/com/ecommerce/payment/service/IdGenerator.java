@@ -0,0 +1,139 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.repository.PaymentRepository;
+import com.ecommerce.payment.util.BlockIdAllocator;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+/**
+ * Issues payment ids, receipt ids and receipt numbers from block-reserved
+ * ranges of DB sequences, so ids are unique across nodes and cost one round
+ * trip per block. Ids stay within int32 to keep the payment.proto wire format.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdGenerator {
+
+    static final String PAYMENT_ID_SEQUENCE = "payment_id_seq";
+    static final String RECEIPT_ID_SEQUENCE = "receipt_id_seq";
+    static final String RECEIPT_NUMBER_SEQUENCE = "receipt_number_seq";
+    // Matches the range the former random payment ids were drawn from
+    private static final long FIRST_PAYMENT_ID = 100_000_000L;
+    // Matches the initial value of the former Hibernate-managed receipt_id_seq
+    private static final long FIRST_RECEIPT_ID = 10_000_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PaymentRepository paymentRepository;
+
+    @Value("${payment.id.block-size:100}")
+    private int blockSize;
+
+    private SequenceSupport sequenceSupport;
+    private int paymentBlockSize;
+    private int receiptIdBlockSize;
+    private int receiptBlockSize;
+    private BlockIdAllocator paymentIds;
+    private BlockIdAllocator receiptIds;
+    private BlockIdAllocator receiptNumbers;
+
+    @PostConstruct
+    public void init() {
+        sequenceSupport = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport();
+        paymentBlockSize = ensureSequence(PAYMENT_ID_SEQUENCE, FIRST_PAYMENT_ID);
+        receiptIdBlockSize = ensureSequence(RECEIPT_ID_SEQUENCE, FIRST_RECEIPT_ID);
+        receiptBlockSize = ensureSequence(RECEIPT_NUMBER_SEQUENCE, 1);
+        paymentIds = new BlockIdAllocator(this::reservePaymentIds);
+        receiptIds = new BlockIdAllocator(this::reserveReceiptIds);
+        receiptNumbers = new BlockIdAllocator(this::reserveReceiptNumbers);
+    }
+
+    public int nextPaymentId() {
+        return (int) paymentIds.next();
+    }
+
+    /**
+     * Receipt ids are assigned up front so a receipt can be reported before its row is written
+     */
+    public int nextReceiptId() {
+        return (int) receiptIds.next();
+    }
+
+    public String nextReceiptNumber() {
+        return String.format("RCP-%010d", receiptNumbers.next());
+    }
+
+    /**
+     * Creates the sequence if missing and returns its increment, which is the
+     * block size actually in use (it may predate a change of payment.id.block-size)
+     */
+    private int ensureSequence(String name, long initialValue) {
+        List<String> increments = jdbcTemplate.queryForList(
+                "SELECT increment FROM information_schema.sequences " +
+                "WHERE upper(sequence_name) = upper(?) AND sequence_schema = current_schema",
+                String.class, name);
+        if (!increments.isEmpty()) {
+            return Integer.parseInt(increments.get(0));
+        }
+        for (String ddl : sequenceSupport.getCreateSequenceStrings(name, (int) initialValue, blockSize)) {
+            jdbcTemplate.execute(ddl);
+        }
+        log.info("Created sequence {} starting at {} with block size {}", name, initialValue, blockSize);
+        return blockSize;
+    }
+
+    private long nextBlockStart(String sequence) {
+        Long start = jdbcTemplate.queryForObject(sequenceSupport.getSequenceNextValString(sequence), Long.class);
+        return start == null ? 0 : start;
+    }
+
+    /**
+     * Next block of payment ids, minus ids already taken by rows written
+     * before sequence allocation (those were random within the same range)
+     */
+    private long[] reservePaymentIds() {
+        long start = nextBlockStart(PAYMENT_ID_SEQUENCE);
+        if (start > Integer.MAX_VALUE) {
+            throw new IllegalStateException(PAYMENT_ID_SEQUENCE + " has exhausted the int32 payment id range");
+        }
+        long end = Math.min(start + paymentBlockSize, (long) Integer.MAX_VALUE + 1);
+        Set<Integer> taken = new HashSet<>(paymentRepository.findPaymentIdsBetween((int) start, (int) (end - 1)));
+        if (!taken.isEmpty()) {
+            log.debug("Skipping {} pre-existing payment ids in block starting at {}", taken.size(), start);
+        }
+        return LongStream.range(start, end).filter(id -> !taken.contains((int) id)).toArray();
+    }
+
+    /**
+     * Next block of receipt ids. Hibernate's pooled optimizer, which used this
+     * sequence before, treated each value as the top of its block, so a fresh
+     * value starts above every id it handed out.
+     */
+    private long[] reserveReceiptIds() {
+        long start = nextBlockStart(RECEIPT_ID_SEQUENCE);
+        if (start > Integer.MAX_VALUE) {
+            throw new IllegalStateException(RECEIPT_ID_SEQUENCE + " has exhausted the int32 receipt id range");
+        }
+        long end = Math.min(start + receiptIdBlockSize, (long) Integer.MAX_VALUE + 1);
+        return LongStream.range(start, end).toArray();
+    }
+
+    private long[] reserveReceiptNumbers() {
+        long start = nextBlockStart(RECEIPT_NUMBER_SEQUENCE);
+        return LongStream.range(start, start + receiptBlockSize).toArray();
+    }
+}
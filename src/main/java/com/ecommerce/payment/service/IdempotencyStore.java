@@ -0,0 +1,111 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.config.ReadRouting;
+import com.ecommerce.payment.entity.IdempotencyRecord;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import com.ecommerce.payment.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Replay store for ProcessPayment responses keyed by the client's idempotency
+ * key. A bounded in-memory cache answers retries without touching the
+ * database; the idempotency_keys table backs it across restarts and nodes.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private final IdempotencyRecordRepository repository;
+    private final Cache<String, byte[]> cache;
+    private final Duration retention;
+
+    public IdempotencyStore(
+            IdempotencyRecordRepository repository,
+            @Value("${payment.idempotency.cache.max-size:100000}") long maxCachedResponses,
+            @Value("${payment.idempotency.cache.ttl:PT10M}") Duration cacheTtl,
+            @Value("${payment.idempotency.retention:P1D}") Duration retention) {
+        this.repository = repository;
+        this.retention = retention;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxCachedResponses)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    /**
+     * Response previously recorded for this user and key, if any
+     */
+    public Optional<PaymentResponse> find(int userId, String idempotencyKey) {
+        String key = scopedKey(userId, idempotencyKey);
+        byte[] bytes = cache.getIfPresent(key);
+        if (bytes == null) {
+            LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+            // A replica may not have the record of a retry that follows right behind the original
+            try (ReadRouting.Scope ignored = ReadRouting.primaryIf(true)) {
+                bytes = repository.findById(key)
+                        .filter(r -> r.getCreatedAt().isAfter(cutoff))
+                        .map(IdempotencyRecord::getResponse)
+                        .orElse(null);
+            }
+            if (bytes == null) {
+                return Optional.empty();
+            }
+            cache.put(key, bytes);
+        }
+        try {
+            return Optional.of(PaymentResponse.parseFrom(bytes));
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Discarding unreadable idempotent response for key {}", key, e);
+            cache.invalidate(key);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records the response for this user and key. Called after the payment has
+     * committed: losing a record only sends a retry down the regular duplicate
+     * check, so a failure here never fails the payment itself.
+     */
+    public void save(int userId, String idempotencyKey, PaymentResponse response) {
+        String key = scopedKey(userId, idempotencyKey);
+        byte[] bytes = response.toByteArray();
+        cache.put(key, bytes);
+        try {
+            repository.save(IdempotencyRecord.builder()
+                    .idempotencyKey(key)
+                    .response(bytes)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (DataAccessException e) {
+            log.warn("Could not persist idempotent response for key {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops persisted responses older than the retention period
+     */
+    @Scheduled(fixedDelayString = "${payment.idempotency.purge-interval:PT1H}")
+    @Transactional
+    public void purgeExpired() {
+        int removed = repository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        if (removed > 0) {
+            log.info("Purged {} expired idempotency records", removed);
+        }
+    }
+
+    private static String scopedKey(int userId, String idempotencyKey) {
+        return userId + ":" + idempotencyKey;
+    }
+}
@@ -0,0 +1,121 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.OutboxEvent;
+import com.ecommerce.payment.events.PaymentEventSink;
+import com.ecommerce.payment.grpc.PaymentEvent;
+import com.ecommerce.payment.repository.OutboxEventRepository;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the payment outbox into the {@link PaymentEventSink}. Each batch is
+ * locked with SKIP LOCKED, published and deleted in one transaction, so
+ * relays on several nodes share the backlog and an event is only removed
+ * once the sink has accepted it. Delivery is at-least-once: a crash between
+ * publish and commit republishes the batch.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository repository;
+    private final PaymentEventSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerPoll;
+    private final Counter published;
+    private final Counter failures;
+    private final Timer lag;
+
+    public OutboxRelay(
+            OutboxEventRepository repository,
+            PaymentEventSink sink,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry registry,
+            @Value("${payment.outbox.batch-size:500}") int batchSize,
+            @Value("${payment.outbox.max-batches-per-poll:50}") int maxBatchesPerPoll) {
+        if (batchSize <= 0 || maxBatchesPerPoll <= 0) {
+            throw new IllegalArgumentException("Outbox batch size and batches per poll must be positive");
+        }
+        this.repository = repository;
+        this.sink = sink;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxBatchesPerPoll = maxBatchesPerPoll;
+        this.published = Counter.builder("payment.outbox.published")
+                .description("Payment events handed to the sink")
+                .register(registry);
+        this.failures = Counter.builder("payment.outbox.publish_failures")
+                .description("Outbox batches rolled back because publishing failed")
+                .register(registry);
+        this.lag = Timer.builder("payment.outbox.lag")
+                .description("Time from the status change to the event being published")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Publishes full batches back to back until the outbox is drained or the
+     * per-poll cap is hit, so a backlog clears without waiting for the next poll
+     */
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval:PT0.1S}")
+    public void drain() {
+        for (int i = 0; i < maxBatchesPerPoll; i++) {
+            int relayed;
+            try {
+                relayed = relayBatch();
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("Publishing payment events failed, retrying on next poll: {}", e.getMessage());
+                return;
+            }
+            if (relayed < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Locks, publishes and deletes one batch; returns how many events it held
+     */
+    int relayBatch() {
+        return transactionTemplate.execute(status -> {
+            List<OutboxEvent> batch = repository.lockNextBatch(Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            List<PaymentEvent> events = new ArrayList<>(batch.size());
+            List<Long> ids = new ArrayList<>(batch.size());
+            for (OutboxEvent row : batch) {
+                ids.add(row.getId());
+                try {
+                    events.add(PaymentEvent.parseFrom(row.getPayload()).toBuilder()
+                            .setEventId(row.getId())
+                            .build());
+                } catch (InvalidProtocolBufferException e) {
+                    log.error("Dropping unreadable outbox event {} of payment {}", row.getId(), row.getPaymentId(), e);
+                    continue;
+                }
+                lag.record(Duration.between(row.getCreatedAt(), now));
+            }
+            sink.publish(events);
+            repository.deleteAllByIdInBatch(ids);
+            published.increment(events.size());
+            return batch.size();
+        });
+    }
+}
@@ -0,0 +1,364 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.config.DatabaseProduct;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Looks after monthly partitions of payments and receipts once the tables
+ * have been converted with db/partitioning/postgresql-partition-by-month.sql.
+ * Keeps partitions created ahead of time, and archives months older than
+ * archive-after whose payments are all final. Each archived partition records
+ * its id range in its table comment, which lets {@link #lowerBoundFor} prune
+ * id lookups to the partitions that can hold the id. Archived partitions stay
+ * attached, so every query still sees them.
+ * <p>
+ * With an archive tablespace set (meant to sit on cheaper, compressed storage),
+ * archived partitions are also moved there. The move rewrites the partition
+ * under an ACCESS EXCLUSIVE lock, which blocks every query that cannot prune
+ * the partition away, so it only runs inside archive-window, on its own
+ * thread, and gives up after archive-lock-timeout rather than queue traffic
+ * behind it. Does nothing unless payments is partitioned.
+ */
+@Component
+@Slf4j
+public class PartitionManager {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern ARCHIVED = Pattern.compile("archived ids (\\d+)-(\\d+)");
+    // Any key shared by all nodes; only one of them maintains partitions at a time
+    private static final long LOCK_KEY = 0x7061_7274_6974_696FL;
+    // A receipt can be issued a while after its payment was created (e.g. by the repair sweep)
+    private static final Duration RECEIPT_SLACK = Duration.ofDays(7);
+
+    private static final List<PartitionedTable> TABLES = List.of(
+            new PartitionedTable("payments", "payment_id"),
+            new PartitionedTable("receipts", "receipt_id"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabaseProduct databaseProduct;
+    private final int monthsAhead;
+    private final Duration archiveAfter;
+    private final String archiveTablespace;
+    private final ArchiveWindow archiveWindow;
+    private final Duration archiveLockTimeout;
+    private final Duration maintenanceInterval;
+    private ScheduledExecutorService archiveMover;
+
+    private volatile boolean active;
+    private volatile Layout layout = new Layout(List.of(), LocalDateTime.MIN);
+
+    public PartitionManager(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            DatabaseProduct databaseProduct,
+            @Value("${payment.partitioning.months-ahead:3}") int monthsAhead,
+            @Value("${payment.partitioning.archive-after:P180D}") Duration archiveAfter,
+            @Value("${payment.partitioning.archive-tablespace:}") String archiveTablespace,
+            @Value("${payment.partitioning.archive-window:02:00-05:00}") String archiveWindow,
+            @Value("${payment.partitioning.archive-lock-timeout:PT5S}") Duration archiveLockTimeout,
+            @Value("${payment.partitioning.maintenance-interval:PT1H}") Duration maintenanceInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.databaseProduct = databaseProduct;
+        this.monthsAhead = monthsAhead;
+        this.archiveAfter = archiveAfter;
+        this.archiveTablespace = archiveTablespace;
+        this.archiveWindow = ArchiveWindow.parse(archiveWindow);
+        this.archiveLockTimeout = archiveLockTimeout;
+        this.maintenanceInterval = maintenanceInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            active = databaseProduct.isPostgres() && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table t JOIN pg_class c ON c.oid = t.partrelid "
+                            + "WHERE c.relname = 'payments' AND pg_table_is_visible(c.oid))", Boolean.class));
+        } catch (DataAccessException e) {
+            log.warn("Could not check whether payments is partitioned: {}", e.getMessage());
+        }
+        if (!active) {
+            log.info("payments is not partitioned; partition maintenance is off");
+            return;
+        }
+        maintain();
+        if (!archiveTablespace.isEmpty()) {
+            log.info("Archived partitions move to tablespace {} between {}", archiveTablespace, archiveWindow);
+            archiveMover = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "partition-archive-mover");
+                t.setDaemon(true);
+                return t;
+            });
+            archiveMover.scheduleWithFixedDelay(this::moveArchivedPartitions, 0,
+                    maintenanceInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (archiveMover != null) {
+            archiveMover.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether payments is partitioned, which also means it has lost its unique
+     * (user, item) index
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Creates upcoming partitions, archives old ones and reloads the partition
+     * layout; tablespace moves are left to {@link #moveArchivedPartitions}
+     */
+    @Scheduled(fixedDelayString = "${payment.partitioning.maintenance-interval:PT1H}")
+    public void maintain() {
+        if (!active) {
+            return;
+        }
+        try {
+            YearMonth current = YearMonth.now();
+            inMaintenanceLock(() -> {
+                for (PartitionedTable table : TABLES) {
+                    for (int i = 0; i <= monthsAhead; i++) {
+                        createPartition(table, current.plusMonths(i));
+                    }
+                }
+            });
+            LocalDateTime archiveBefore = LocalDateTime.now().minus(archiveAfter);
+            for (PartitionedTable table : TABLES) {
+                for (Partition partition : partitions(table)) {
+                    if (!partition.archived() && !partition.to().isAfter(archiveBefore)) {
+                        inMaintenanceLock(() -> archive(partition));
+                    }
+                }
+            }
+            reloadLayout();
+        } catch (DataAccessException e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * Earliest creation time a payment (or the payment of a receipt) with this
+     * id can have: the oldest archived partition whose id range holds it, or
+     * else the oldest partition not archived yet. Queries bounded by it skip
+     * every other archived partition. Empty when payments is not partitioned.
+     */
+    public Optional<LocalDateTime> lowerBoundFor(int id) {
+        if (!active) {
+            return Optional.empty();
+        }
+        Layout current = layout;
+        LocalDateTime bound = current.hotFrom();
+        for (Partition partition : current.archived()) {
+            if (id >= partition.minId() && id <= partition.maxId() && partition.from().isBefore(bound)) {
+                bound = partition.from();
+            }
+        }
+        return Optional.of(bound == LocalDateTime.MIN ? bound : bound.minus(RECEIPT_SLACK));
+    }
+
+    /**
+     * Moves archived partitions and their indexes to the archive tablespace,
+     * one partition per transaction. Outside the archive window it does
+     * nothing; a partition whose lock is not granted within
+     * archive-lock-timeout is retried on the next run.
+     */
+    void moveArchivedPartitions() {
+        if (!archiveWindow.contains(LocalTime.now())) {
+            return;
+        }
+        try {
+            for (PartitionedTable table : TABLES) {
+                for (Partition partition : partitions(table)) {
+                    if (partition.archived() && !archiveTablespace.equals(tablespaceOf(partition.name()))) {
+                        inMaintenanceLock(() -> moveToArchiveTablespace(partition));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Caught broadly: an exception escaping would cancel the mover's schedule
+            log.warn("Moving archived partitions to {} failed, retrying on the next run: {}",
+                    archiveTablespace, e.getMessage());
+        }
+    }
+
+    private void moveToArchiveTablespace(Partition partition) {
+        long started = System.nanoTime();
+        jdbcTemplate.execute(sql("SET LOCAL lock_timeout = %L", archiveLockTimeout.toMillis() + "ms"));
+        // Rewrites the partition compactly; its indexes are moved one by one
+        jdbcTemplate.execute(sql("ALTER TABLE %I SET TABLESPACE %I", partition.name(), archiveTablespace));
+        for (String index : jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename = ?", String.class, partition.name())) {
+            jdbcTemplate.execute(sql("ALTER INDEX %I SET TABLESPACE %I", index, archiveTablespace));
+        }
+        log.info("Moved partition {} to tablespace {} in {} ms", partition.name(), archiveTablespace,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private String tablespaceOf(String table) {
+        List<String> tablespace = jdbcTemplate.queryForList(
+                "SELECT tablespace FROM pg_tables WHERE tablename = ?", String.class, table);
+        return tablespace.isEmpty() ? null : tablespace.get(0);
+    }
+
+    private void createPartition(PartitionedTable table, YearMonth month) {
+        LocalDate from = month.atDay(1);
+        jdbcTemplate.execute(sql("CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)",
+                table.name() + "_p" + month.format(SUFFIX), table.name(), from, from.plusMonths(1)));
+    }
+
+    /**
+     * Records the id range of a month whose payments are all final. A month
+     * still holding an unfinished payment is left for the next run.
+     */
+    private void archive(Partition partition) {
+        if (partition.table().name().equals("payments") && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                sql("SELECT EXISTS (SELECT 1 FROM %I WHERE payment_status IN ('PENDING', 'PROCESSING'))",
+                        partition.name()), Boolean.class))) {
+            log.warn("Not archiving {}: it still holds unfinished payments", partition.name());
+            return;
+        }
+        Long[] range = jdbcTemplate.queryForObject(
+                sql("SELECT min(%1$I), max(%1$I) FROM %2$I", partition.table().idColumn(), partition.name()),
+                (rs, i) -> new Long[]{rs.getLong(1), rs.getLong(2)});
+        // An empty month gets an empty range, so no lookup is ever pointed at it
+        String note = range == null || range[1] == 0
+                ? "archived ids 1-0"
+                : "archived ids " + range[0] + "-" + range[1];
+        jdbcTemplate.execute(sql("COMMENT ON TABLE %I IS %L", partition.name(), note));
+        jdbcTemplate.execute(sql("ANALYZE %I", partition.name()));
+        log.info("Archived partition {} ({})", partition.name(), note);
+    }
+
+    /**
+     * Builds a statement with PostgreSQL's format(), so identifiers (%I) and
+     * literals (%L) are quoted by the database rather than pasted in
+     */
+    private String sql(String template, Object... args) {
+        Object[] params = new Object[args.length + 1];
+        params[0] = template;
+        for (int i = 0; i < args.length; i++) {
+            params[i + 1] = String.valueOf(args[i]);
+        }
+        return jdbcTemplate.queryForObject("SELECT format(?" + ", ?::text".repeat(args.length) + ")",
+                String.class, params);
+    }
+
+    private void reloadLayout() {
+        List<Partition> archived = new ArrayList<>();
+        LocalDateTime hotFrom = null;
+        for (PartitionedTable table : TABLES) {
+            for (Partition partition : partitions(table)) {
+                if (partition.archived()) {
+                    archived.add(partition);
+                } else if (hotFrom == null || partition.from().isBefore(hotFrom)) {
+                    hotFrom = partition.from();
+                }
+            }
+        }
+        layout = new Layout(List.copyOf(archived), hotFrom == null ? LocalDateTime.MIN : hotFrom);
+    }
+
+    /**
+     * Monthly partitions of the table, named {table}_pYYYYMM; others are ignored
+     */
+    private List<Partition> partitions(PartitionedTable table) {
+        Pattern name = Pattern.compile(table.name() + "_p(\\d{6})");
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query("SELECT c.relname, obj_description(c.oid, 'pg_class') "
+                        + "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = ? AND pg_table_is_visible(p.oid)",
+                rs -> {
+                    Matcher m = name.matcher(rs.getString(1));
+                    if (!m.matches()) {
+                        return;
+                    }
+                    LocalDateTime from = YearMonth.parse(m.group(1), SUFFIX).atDay(1).atStartOfDay();
+                    String comment = rs.getString(2);
+                    Matcher archived = comment == null ? null : ARCHIVED.matcher(comment);
+                    boolean isArchived = archived != null && archived.matches();
+                    partitions.add(new Partition(table, rs.getString(1), from, from.plusMonths(1), isArchived,
+                            isArchived ? Long.parseLong(archived.group(1)) : 0,
+                            isArchived ? Long.parseLong(archived.group(2)) : -1));
+                },
+                table.name());
+        return partitions;
+    }
+
+    private void inMaintenanceLock(Runnable work) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY))) {
+                work.run();
+            }
+        });
+    }
+
+    private record PartitionedTable(String name, String idColumn) {
+    }
+
+    private record Partition(PartitionedTable table, String name, LocalDateTime from, LocalDateTime to,
+                             boolean archived, long minId, long maxId) {
+    }
+
+    /**
+     * Archived partitions with their id ranges, and where the not yet archived ones start
+     */
+    private record Layout(List<Partition> archived, LocalDateTime hotFrom) {
+    }
+
+    /**
+     * Daily local-time window, e.g. 02:00-05:00; it may wrap past midnight
+     */
+    record ArchiveWindow(LocalTime start, LocalTime end) {
+
+        static ArchiveWindow parse(String window) {
+            String[] bounds = window.split("-");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException(
+                        "payment.partitioning.archive-window must look like HH:mm-HH:mm, not " + window);
+            }
+            return new ArchiveWindow(LocalTime.parse(bounds[0].trim()), LocalTime.parse(bounds[1].trim()));
+        }
+
+        boolean contains(LocalTime time) {
+            return start.isBefore(end)
+                    ? !time.isBefore(start) && time.isBefore(end)
+                    : !time.isBefore(start) || time.isBefore(end);
+        }
+
+        @Override
+        public String toString() {
+            return start + "-" + end;
+        }
+    }
+}
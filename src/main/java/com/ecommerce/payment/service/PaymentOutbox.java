@@ -0,0 +1,56 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.OutboxEvent;
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.grpc.PaymentEvent;
+import com.ecommerce.payment.grpc.PaymentEventType;
+import com.ecommerce.payment.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Write side of the payment outbox. Events are queued in the caller's
+ * transaction, so they are published if and only if the status change
+ * commits; {@link OutboxRelay} takes it from there.
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentOutbox {
+
+    private final OutboxEventRepository repository;
+
+    /**
+     * Queues the event for a payment that has just reached a final status.
+     * The INSERT is flushed with the rest of the transaction at commit.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordFinalStatus(Payment payment) {
+        PaymentEventType type = switch (payment.getPaymentStatus()) {
+            case COMPLETED -> PaymentEventType.PAYMENT_COMPLETED;
+            case FAILED -> PaymentEventType.PAYMENT_FAILED;
+            default -> throw new IllegalArgumentException(
+                    "No event for payment status " + payment.getPaymentStatus());
+        };
+        LocalDateTime now = LocalDateTime.now();
+        PaymentEvent.Builder event = PaymentEvent.newBuilder()
+                .setType(type)
+                .setPaymentId(payment.getPaymentId())
+                .setUserId(payment.getUserId())
+                .setItemId(payment.getItemId())
+                .setTotalAmount(payment.getTotalAmount())
+                .setOccurredAt(now.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        if (payment.getTransactionReference() != null) {
+            event.setTransactionReference(payment.getTransactionReference());
+        }
+        repository.save(OutboxEvent.builder()
+                .paymentId(payment.getPaymentId())
+                .payload(event.build().toByteArray())
+                .createdAt(now)
+                .build());
+    }
+}
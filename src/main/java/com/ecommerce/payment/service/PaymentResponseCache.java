@@ -0,0 +1,144 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-through cache of serialized GetPaymentById responses, keyed by the
+ * looked-up id, which is a payment id or a receipt id. Terminal payments
+ * (COMPLETED, FAILED, REFUNDED) are kept for a long time; in-flight ones only
+ * briefly, as their status is about to change. PaymentService invalidates a
+ * payment whenever it changes its status or re-issues its receipt, which drops
+ * the entries under both ids.
+ * <p>
+ * Each node has its own cache and invalidation is local. Another node can
+ * serve a payment it cached before the change for up to the in-flight TTL,
+ * or up to the terminal TTL for a terminal payment whose receipt was
+ * re-issued. Hit, miss and eviction counts are published as cache.* metrics.
+ */
+@Component
+@Slf4j
+public class PaymentResponseCache {
+
+    private final Cache<Integer, CachedResponse> cache;
+    // Payment id to the receipt id its response is also cached under; each
+    // mapping is added and evicted together with that receipt-id entry
+    private final Map<Integer, Integer> receiptIds = new ConcurrentHashMap<>();
+
+    public PaymentResponseCache(
+            MeterRegistry meterRegistry,
+            @Value("${payment.response-cache.max-size:50000}") long maxSize,
+            @Value("${payment.response-cache.terminal-ttl:PT1H}") Duration terminalTtl,
+            @Value("${payment.response-cache.in-flight-ttl:PT2S}") Duration inFlightTtl) {
+        long terminalNanos = terminalTtl.toNanos();
+        long inFlightNanos = inFlightTtl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Integer, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(Integer id, CachedResponse value, long currentTime) {
+                        return value.terminal() ? terminalNanos : inFlightNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer id, CachedResponse value, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(id, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer id, CachedResponse value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                // Runs atomically with the eviction, under the same lock as put's compute for the key
+                .evictionListener((Integer id, CachedResponse value, RemovalCause cause) -> {
+                    if (id != null && value != null && id != value.paymentId()) {
+                        receiptIds.remove(value.paymentId(), id);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "payment.responses");
+    }
+
+    public PaymentResponse get(int id) {
+        CachedResponse cached = cache.getIfPresent(id);
+        if (cached == null) {
+            return null;
+        }
+        try {
+            return PaymentResponse.parseFrom(cached.bytes());
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Discarding unreadable cached response for id {}", id, e);
+            cache.invalidate(id);
+            return null;
+        }
+    }
+
+    public void put(int id, Payment.PaymentStatus status, PaymentResponse response) {
+        CachedResponse cached = new CachedResponse(response.getPaymentId(), response.toByteArray(), isTerminal(status));
+        if (id == cached.paymentId()) {
+            cache.put(id, cached);
+            return;
+        }
+        cache.asMap().compute(id, (receiptId, previous) -> {
+            receiptIds.put(cached.paymentId(), receiptId);
+            return cached;
+        });
+    }
+
+    /**
+     * Drops the entries for a payment that is changing, under its payment id
+     * and its receipt id. Inside a transaction they are dropped once the
+     * transaction completes, after the change is visible; a read racing the
+     * commit can at worst re-cache the old in-flight status, which expires
+     * within the in-flight TTL.
+     */
+    public void invalidate(int paymentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    drop(paymentId);
+                }
+            });
+        } else {
+            drop(paymentId);
+        }
+    }
+
+    private void drop(int paymentId) {
+        cache.invalidate(paymentId);
+        Integer receiptId = receiptIds.remove(paymentId);
+        if (receiptId != null) {
+            cache.invalidate(receiptId);
+        }
+    }
+
+    private static boolean isTerminal(Payment.PaymentStatus status) {
+        return status == Payment.PaymentStatus.COMPLETED
+                || status == Payment.PaymentStatus.FAILED
+                || status == Payment.PaymentStatus.REFUNDED;
+    }
+
+    private record CachedResponse(int paymentId, byte[] bytes, boolean terminal) {
+    }
+}
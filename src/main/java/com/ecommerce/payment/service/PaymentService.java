@@ -1,27 +1,55 @@
 package com.ecommerce.payment.service;
 
+import com.ecommerce.payment.config.DatabaseProduct;
+import com.ecommerce.payment.config.ReadRouting;
 import com.ecommerce.payment.entity.Address;
 import com.ecommerce.payment.entity.CreditCardInfo;
 import com.ecommerce.payment.entity.Payment;
 import com.ecommerce.payment.entity.Receipt;
+import com.ecommerce.payment.gateway.AuthorizationResult;
+import com.ecommerce.payment.gateway.PaymentGateway;
 import com.ecommerce.payment.grpc.*;
 import com.ecommerce.payment.repository.PaymentRepository;
+import com.ecommerce.payment.repository.PaymentWithReceipt;
 import com.ecommerce.payment.repository.ReceiptRepository;
+import com.ecommerce.payment.service.PaymentStageMetrics.Stage;
 import com.ecommerce.payment.util.CreditCardValidator;
+import com.google.protobuf.InvalidProtocolBufferException;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -36,12 +64,43 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final ReceiptRepository receiptRepository;
     private final CreditCardValidator creditCardValidator;
-
-    @Value("${payment.hst.rate:0.13}")
-    private double hstRate;
-
-    @Value("${payment.shipping.expedited.surcharge:10}")
-    private int expeditedSurcharge;
+    private final PaymentGateway paymentGateway;
+    private final IdempotencyStore idempotencyStore;
+    private final DuplicatePaymentGuard duplicateGuard;
+    private final IdGenerator idGenerator;
+    private final PricingEngine pricingEngine;
+    private final PaymentResponseCache responseCache;
+    private final PaymentStageMetrics stageMetrics;
+    private final PaymentOutbox outbox;
+    private final ReceiptWriter receiptWriter;
+    private final RecentWrites recentWrites;
+    private final UserSpendTotals spendTotals;
+    private final PartitionManager partitionManager;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseProduct databaseProduct;
+    private final EntityManager entityManager;
+    @Qualifier("paymentExecutor")
+    private final Executor paymentExecutor;
+
+    private static final List<Payment.PaymentStatus> DUPLICATE_STATUSES =
+            List.of(Payment.PaymentStatus.PROCESSING, Payment.PaymentStatus.COMPLETED);
+
+    // Any key shared by all nodes; only one of them sweeps for missing receipts at a time
+    private static final long RECEIPT_REPAIR_LOCK_KEY = 0x7265_6365_6970_7473L;
+
+    private static final String DUPLICATE_PAYMENT_MESSAGE =
+            "You already purchased this item. Duplicate payment is not allowed.";
+    private static final String OVERLOADED_MESSAGE = "Payment service is overloaded, retry later";
+
+    // Completed payments younger than this may still have their receipt queued (see ReceiptWriter)
+    @Value("${payment.receipt.async.repair-grace:PT5M}")
+    private Duration receiptRepairGrace;
+    @Value("${payment.receipt.async.repair-lookback:P1D}")
+    private Duration receiptRepairLookback;
+
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 20;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
 
     private static final int SCALE = 2;
     private static final RoundingMode ROUND = RoundingMode.HALF_UP;
@@ -68,118 +127,573 @@ public class PaymentService {
 //    }
 
     /**
-     * Process payment request - Main business logic for Use Case 5
+     * Process payment request - Main business logic for Use Case 5.
+     * The payment is reserved in a short transaction, authorized by the
+     * {@link PaymentGateway} without holding a thread or connection, and
+     * finalized in a second transaction once the gateway answers. Concurrent
+     * requests for the same user and item share a single attempt.
      */
-    @Transactional
-    public PaymentResponse processPayment(PaymentRequest request) {
+    public CompletableFuture<PaymentResponse> processPayment(PaymentRequest request) {
         log.info("Processing payment for user: {} and item: {}",
                 request.getUserInfo().getUserId(), request.getItemId());
 
         try {
+            // A retry of an already completed request gets the original response back
+            if (!request.getIdempotencyKey().isEmpty()) {
+                long lookupStart = System.nanoTime();
+                Optional<PaymentResponse> replay = findReplay(request);
+                stageMetrics.recordSince(Stage.IDEMPOTENCY_LOOKUP, lookupStart);
+                if (replay.isPresent()) {
+                    return CompletableFuture.completedFuture(replay.get());
+                }
+            }
+
             // Validate credit card information
+            long validationStart = System.nanoTime();
             CreditCardValidator.ValidationResult validationResult = validateCreditCard(
                     request.getCreditCardInfo()
             );
+            stageMetrics.recordSince(Stage.VALIDATION, validationStart);
 
             if (!validationResult.isValid()) {
                 log.error("Credit card validation failed: {}", validationResult.getErrors());
-                return buildErrorResponse("Payment validation failed: " + validationResult.getErrors());
+                return CompletableFuture.completedFuture(
+                        buildErrorResponse("Payment validation failed: " + validationResult.getErrors()));
             }
+        } catch (Exception e) {
+            log.error("Error processing payment", e);
+            return CompletableFuture.completedFuture(
+                    buildErrorResponse("An error occurred while processing your payment: " + e.getMessage()));
+        }
+
+        return duplicateGuard.execute(request.getUserInfo().getUserId(), request.getItemId(),
+                request.getIdempotencyKey(), () -> reserveAndAuthorize(request), this::sharedOutcome);
+    }
+
+    /**
+     * Reservation, gateway authorization and finalization of a single payment
+     */
+    private CompletableFuture<PaymentResponse> reserveAndAuthorize(PaymentRequest request) {
+        Reservation reservation;
+        long reservationStart = System.nanoTime();
+        try {
+            try {
+                reservation = transactionTemplate.execute(status -> reservePayment(request));
+            } catch (DataIntegrityViolationException e) {
+                // Another node reserved the same (user, item) after our duplicate check; re-checking returns its payment
+                duplicateGuard.recordConflict();
+                log.warn("Reservation conflict for user: {} and item: {}, re-checking",
+                        request.getUserInfo().getUserId(), request.getItemId());
+                reservation = transactionTemplate.execute(status -> reservePayment(request));
+            }
+        } catch (Exception e) {
+            log.error("Error processing payment", e);
+            return CompletableFuture.completedFuture(
+                    buildErrorResponse("An error occurred while processing your payment: " + e.getMessage()));
+        } finally {
+            stageMetrics.recordSince(Stage.RESERVATION, reservationStart);
+        }
+
+        if (reservation.response() != null) {
+            return CompletableFuture.completedFuture(reservation.response());
+        }
+
+        Payment savedPayment = reservation.payment();
+        long gatewayStart = System.nanoTime();
+        return paymentGateway.authorize(savedPayment)
+                .handle((result, e) -> {
+                    // Runs on the thread completing the authorization, before the hand-off to paymentExecutor
+                    stageMetrics.recordSince(Stage.GATEWAY, gatewayStart);
+                    if (e == null) {
+                        return result;
+                    }
+                    log.error("Payment gateway error for payment ID: {}", savedPayment.getPaymentId(), e);
+                    return AuthorizationResult.declined("Payment processing failed");
+                })
+                .thenApplyAsync(result -> {
+                    long finalizationStart = System.nanoTime();
+                    try {
+                        return transactionTemplate.execute(status -> finalizePayment(savedPayment, result));
+                    } finally {
+                        stageMetrics.recordSince(Stage.FINALIZATION, finalizationStart);
+                    }
+                }, paymentExecutor)
+                .thenApply(response -> rememberResponse(request, response))
+                .exceptionally(e -> {
+                    if (isRejected(e)) {
+                        // paymentExecutor is full: release the reservation and let the caller retry
+                        log.warn("Payment executor is full, failing payment ID: {}", savedPayment.getPaymentId());
+                        markFailed(savedPayment, OVERLOADED_MESSAGE);
+                        throw (CompletionException) e;
+                    }
+                    log.error("Error processing payment", e);
+                    markFailed(savedPayment, e.getMessage());
+                    return buildErrorResponse("An error occurred while processing your payment: " + e.getMessage());
+                });
+    }
+
+    /**
+     * Duplicate check and PROCESSING insert, run inside the reservation transaction
+     */
+    private Reservation reservePayment(PaymentRequest request) {
+        //Check user can't pay more than once for same item.
+        final int uid = request.getUserInfo().getUserId();
+        final int itemId = request.getItemId();
+
+        long duplicateCheckStart = System.nanoTime();
+        lockPairs(LongStream.of(DuplicatePaymentGuard.pairKey(uid, itemId)));
+        boolean already = paymentRepository.existsByUserIdAndItemIdAndPaymentStatusIn(
+                uid, itemId, DUPLICATE_STATUSES);
+
+        if (already) {
+            // Try to return the existing COMPLETED payment + its receipt, if present
+            var existingOpt =
+                    paymentRepository.findTopByUserIdAndItemIdAndPaymentStatusOrderByCreatedAtDesc(
+                            uid, itemId, Payment.PaymentStatus.COMPLETED);
+
+            var receiptOpt = existingOpt
+                    .flatMap(p -> receiptRepository.findByPaymentId(p.getPaymentId())
+                            .or(() -> receiptWriter.pending(p.getPaymentId())));
+
+            stageMetrics.recordSince(Stage.DUPLICATE_CHECK, duplicateCheckStart);
+            return new Reservation(null, duplicateResponse(existingOpt.orElse(null), receiptOpt.orElse(null)));
+        }
+        stageMetrics.recordSince(Stage.DUPLICATE_CHECK, duplicateCheckStart);
+
 
-            //Check user can't pay more than once for same item.
-            final int uid = request.getUserInfo().getUserId();
-            final int itemId = request.getItemId();
+        // Create and save payment entity
+        Payment savedPayment = paymentRepository.save(buildPayment(request));
 
-            boolean already = paymentRepository.existsByUserIdAndItemIdAndPaymentStatusIn(
-                    uid, itemId,
-                    java.util.List.of(
-                            Payment.PaymentStatus.PROCESSING,
-                            Payment.PaymentStatus.COMPLETED));
+        log.info("Payment saved successfully with ID: {}", savedPayment.getPaymentId());
+        return new Reservation(savedPayment, null);
+    }
 
-            if (already) {
-                // Try to return the existing COMPLETED payment + its receipt, if present
-                var existingOpt =
-                        paymentRepository.findTopByUserIdAndItemIdAndPaymentStatusOrderByCreatedAtDesc(
-                                uid, itemId, Payment.PaymentStatus.COMPLETED);
+    /**
+     * Takes a transaction-scoped advisory lock per (user, item) pair while
+     * payments is partitioned. The partitioned table has no unique
+     * (user, item) index, so without the lock two nodes could both pass the
+     * duplicate check. Keys are locked in order so overlapping batches cannot
+     * deadlock.
+     */
+    private void lockPairs(LongStream pairKeys) {
+        if (!partitionManager.isActive()) {
+            return;
+        }
+        pairKeys.sorted().distinct().forEach(key ->
+                jdbcTemplate.queryForObject("SELECT 1 FROM pg_advisory_xact_lock(?)", Integer.class, key));
+    }
 
-                var receiptOpt = existingOpt
-                        .flatMap(p -> receiptRepository.findByPaymentId(p.getPaymentId()));
+    /**
+     * Applies the gateway decision and issues the receipt, run inside the
+     * finalization transaction. The detached reservation is updated in place
+     * rather than merged, so this is one UPDATE plus the receipt INSERT, or
+     * just the UPDATE when receipts are written asynchronously.
+     */
+    private PaymentResponse finalizePayment(Payment savedPayment, AuthorizationResult result) {
+        if (!result.isApproved()) {
+            finalizeReservation(savedPayment, Payment.PaymentStatus.FAILED, null, result.getErrorMessage());
+            return buildErrorResponse("Payment processing failed. Please try again.");
+        }
+
+        // Update payment status to completed
+        finalizeReservation(savedPayment, Payment.PaymentStatus.COMPLETED, result.getTransactionReference(), null);
+
+        // Generate receipt; in ASYNC mode its row is written after the response by ReceiptWriter
+        long receiptStart = System.nanoTime();
+        Receipt receipt = createReceipt(savedPayment);
+        if (receiptWriter.isAsync()) {
+            receiptWriter.submit(receipt);
+        } else {
+            receiptRepository.save(receipt);
+        }
+        stageMetrics.recordSince(Stage.RECEIPT, receiptStart);
 
-                return duplicateResponse(existingOpt.orElse(null), receiptOpt.orElse(null));
+        log.info("Receipt generated successfully with ID: {}", receipt.getReceiptId());
+
+        // Build and return success response
+        return buildSuccessResponse(savedPayment, receipt);
+    }
+
+    /**
+     * Process a batch of payment requests. Card validation runs per item, the
+     * duplicate check is a single set-based query and the PROCESSING inserts,
+     * status updates and receipts are written as JDBC batches. The returned
+     * list holds one response per request, in request order.
+     */
+    public CompletableFuture<List<PaymentResponse>> processPayments(List<PaymentRequest> requests) {
+        log.info("Processing batch of {} payments", requests.size());
+
+        PaymentResponse[] results = new PaymentResponse[requests.size()];
+        List<Integer> accepted = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Optional<PaymentResponse> replay;
+            try {
+                replay = findReplay(requests.get(i));
+            } catch (Exception e) {
+                log.error("Idempotency lookup failed", e);
+                replay = Optional.empty();
+            }
+            if (replay.isPresent()) {
+                results[i] = replay.get();
+                continue;
             }
+            CreditCardValidator.ValidationResult validationResult =
+                    validateCreditCard(requests.get(i).getCreditCardInfo());
+            if (validationResult.isValid()) {
+                accepted.add(i);
+            } else {
+                results[i] = buildErrorResponse("Payment validation failed: " + validationResult.getErrors());
+            }
+        }
+        if (accepted.isEmpty()) {
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+        }
 
+        BatchReservation reservation;
+        try {
+            reservation = reserveBatch(requests, accepted, results);
+        } catch (Exception e) {
+            log.error("Error processing payment batch", e);
+            String message = "An error occurred while processing your payment: " + e.getMessage();
+            accepted.forEach(i -> results[i] = buildErrorResponse(message));
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+        }
 
-            // ints from proto (whole dollars)
-            int itemCostInt     = request.getItemCost();                 // already int32
-            int shippingCostInt = calculateShippingCost(request.getShippingInfo()); // returns int
+        List<Payment> reserved = reservation.payments();
+        if (reserved.isEmpty()) {
+            return CompletableFuture.completedFuture(Arrays.asList(results));
+        }
 
-            // precise tax math with BigDecimal
-            BigDecimal itemBD     = money(itemCostInt);
-            BigDecimal shippingBD = money(shippingCostInt);
-            BigDecimal subTotalBD = itemBD.add(shippingBD);
-            BigDecimal hstBD      = subTotalBD.multiply(BigDecimal.valueOf(hstRate)).setScale(2, ROUND);
-            BigDecimal totalBD    = subTotalBD.add(hstBD).setScale(2, ROUND);
+        List<CompletableFuture<AuthorizationResult>> authorizations = new ArrayList<>(reserved.size());
+        for (Payment payment : reserved) {
+            authorizations.add(paymentGateway.authorize(payment)
+                    .exceptionally(e -> {
+                        log.error("Payment gateway error for payment ID: {}", payment.getPaymentId(), e);
+                        return AuthorizationResult.declined("Payment processing failed");
+                    }));
+        }
 
-            double hstAmountOut   = hstBD.doubleValue();
-            double totalAmountOut = totalBD.doubleValue();
-            log.debug("Payment calculation - Item: ${}, Shipping: ${}, HST: ${}, Total: ${}",
-                    itemBD, shippingBD, hstBD, totalBD);
+        return CompletableFuture.allOf(authorizations.toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> {
+                    transactionTemplate.executeWithoutResult(status ->
+                            finalizePayments(reservation, authorizations, results));
+                    for (int i : reservation.indexes()) {
+                        rememberResponse(requests.get(i), results[i]);
+                    }
+                    return Arrays.asList(results);
+                }, paymentExecutor)
+                .exceptionally(e -> {
+                    if (isRejected(e)) {
+                        log.warn("Payment executor is full, failing a batch of {} payments", reserved.size());
+                        reserved.forEach(p -> markFailed(p, OVERLOADED_MESSAGE));
+                        throw (CompletionException) e;
+                    }
+                    log.error("Error processing payment batch", e);
+                    String message = "An error occurred while processing your payment: " + e.getMessage();
+                    reserved.forEach(p -> markFailed(p, e.getMessage()));
+                    for (int i : accepted) {
+                        if (results[i] == null) {
+                            results[i] = buildErrorResponse(message);
+                        }
+                    }
+                    return Arrays.asList(results);
+                });
+    }
 
-            // Create and save payment entity
-            Payment payment = createPaymentEntity(
-                    request, itemCostInt, shippingCostInt, hstAmountOut, totalAmountOut);
-            Payment savedPayment = paymentRepository.save(payment);
+    private BatchReservation reserveBatch(List<PaymentRequest> requests, List<Integer> accepted,
+                                          PaymentResponse[] results) {
+        try {
+            return transactionTemplate.execute(status -> reservePayments(requests, accepted, results));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request took one of the (user, item) pairs; the retry reports it as a duplicate
+            duplicateGuard.recordConflict();
+            log.warn("Reservation conflict in payment batch, re-checking duplicates");
+            return transactionTemplate.execute(status -> reservePayments(requests, accepted, results));
+        }
+    }
 
-            log.info("Payment saved successfully with ID: {}", savedPayment.getPaymentId());
+    /**
+     * Set-based duplicate check and batched PROCESSING inserts for a batch.
+     * Requests repeating an earlier (user, item) pair of the same batch are
+     * answered from that earlier request once it is finalized.
+     */
+    private BatchReservation reservePayments(List<PaymentRequest> requests, List<Integer> accepted,
+                                             PaymentResponse[] results) {
+        lockPairs(accepted.stream().mapToLong(i ->
+                DuplicatePaymentGuard.pairKey(requests.get(i).getUserInfo().getUserId(), requests.get(i).getItemId())));
+        Set<Integer> userIds = new HashSet<>();
+        Set<Integer> itemIds = new HashSet<>();
+        for (int i : accepted) {
+            userIds.add(requests.get(i).getUserInfo().getUserId());
+            itemIds.add(requests.get(i).getItemId());
+        }
 
-            // Simulate payment processing (mock validation)
-            boolean paymentSuccess = simulatePaymentProcessing(savedPayment);
+        // The IN lists over-select; only exact (user, item) pairs count as duplicates
+        Map<Long, Payment> existing = new HashMap<>();
+        for (Payment p : paymentRepository.findByUserIdInAndItemIdInAndPaymentStatusIn(
+                userIds, itemIds, DUPLICATE_STATUSES)) {
+            existing.merge(DuplicatePaymentGuard.pairKey(p.getUserId(), p.getItemId()), p, PaymentService::preferCompleted);
+        }
+        List<Integer> completedIds = existing.values().stream()
+                .filter(p -> p.getPaymentStatus() == Payment.PaymentStatus.COMPLETED)
+                .map(Payment::getPaymentId)
+                .toList();
+        Map<Integer, Receipt> receipts = completedIds.isEmpty() ? Map.of()
+                : receiptRepository.findByPaymentIdIn(completedIds).stream()
+                        .collect(Collectors.toMap(r -> r.getPayment().getPaymentId(), r -> r));
+
+        List<Integer> indexes = new ArrayList<>(accepted.size());
+        List<Payment> payments = new ArrayList<>(accepted.size());
+        Map<Integer, Integer> followers = new HashMap<>();
+        Map<Long, Integer> leaders = new HashMap<>();
+        for (int i : accepted) {
+            PaymentRequest request = requests.get(i);
+            long key = DuplicatePaymentGuard.pairKey(request.getUserInfo().getUserId(), request.getItemId());
+            Payment already = existing.get(key);
+            if (already != null) {
+                Payment completed = already.getPaymentStatus() == Payment.PaymentStatus.COMPLETED ? already : null;
+                results[i] = duplicateResponse(completed,
+                        completed != null ? receiptOf(completed, receipts.get(completed.getPaymentId())) : null);
+                continue;
+            }
+            Integer leader = leaders.putIfAbsent(key, i);
+            if (leader != null) {
+                followers.put(i, leader);
+                continue;
+            }
+            indexes.add(i);
+            payments.add(buildPayment(request));
+        }
 
-            if (!paymentSuccess) {
-                savedPayment.setPaymentStatus(Payment.PaymentStatus.FAILED);
-                savedPayment.setPaymentErrorMessage("Payment processing failed");
-                paymentRepository.save(savedPayment);
-                return buildErrorResponse("Payment processing failed. Please try again.");
+        List<Payment> saved = paymentRepository.saveAll(payments);
+        log.info("Reserved {} of {} batched payments", saved.size(), accepted.size());
+        return new BatchReservation(indexes, saved, followers);
+    }
+
+    /**
+     * Applies the gateway decisions of a batch and issues its receipts in one transaction
+     */
+    private void finalizePayments(BatchReservation reservation,
+                                  List<CompletableFuture<AuthorizationResult>> authorizations,
+                                  PaymentResponse[] results) {
+        List<Payment> reserved = reservation.payments();
+        Map<String, Payment> managed = paymentRepository
+                .findAllById(reserved.stream().map(Payment::getId).toList()).stream()
+                .collect(Collectors.toMap(Payment::getId, p -> p));
+
+        List<Integer> receiptIndexes = new ArrayList<>(reserved.size());
+        List<Receipt> receipts = new ArrayList<>(reserved.size());
+        List<Payment> completed = new ArrayList<>(reserved.size());
+        for (int k = 0; k < reserved.size(); k++) {
+            int index = reservation.indexes().get(k);
+            Payment payment = managed.get(reserved.get(k).getId());
+            AuthorizationResult result = authorizations.get(k).join();
+            if (!result.isApproved()) {
+                changeStatus(payment, Payment.PaymentStatus.FAILED);
+                payment.setPaymentErrorMessage(result.getErrorMessage());
+                outbox.recordFinalStatus(payment);
+                results[index] = buildErrorResponse("Payment processing failed. Please try again.");
+                continue;
             }
+            changeStatus(payment, Payment.PaymentStatus.COMPLETED);
+            payment.setTransactionReference(result.getTransactionReference());
+            outbox.recordFinalStatus(payment);
+            completed.add(payment);
+            receiptIndexes.add(index);
+            receipts.add(createReceipt(payment));
+        }
 
-            // Update payment status to completed
-            savedPayment.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
-            savedPayment.setTransactionReference("TXN-" + System.currentTimeMillis());
-            paymentRepository.save(savedPayment);
+        List<Receipt> savedReceipts = receiptRepository.saveAll(receipts);
+        spendTotals.recordCompleted(completed, LocalDateTime.now());
+        Map<Integer, Receipt> receiptsByIndex = new HashMap<>();
+        for (int k = 0; k < savedReceipts.size(); k++) {
+            Receipt receipt = savedReceipts.get(k);
+            receiptsByIndex.put(receiptIndexes.get(k), receipt);
+            results[receiptIndexes.get(k)] = buildSuccessResponse(receipt.getPayment(), receipt);
+        }
 
-            // Generate receipt
-            Receipt receipt = createReceipt(savedPayment);
-            Receipt savedReceipt = receiptRepository.save(receipt);
+        reservation.followers().forEach((follower, leader) -> {
+            Receipt leaderReceipt = receiptsByIndex.get(leader);
+            results[follower] = leaderReceipt != null
+                    ? duplicateResponse(leaderReceipt.getPayment(), leaderReceipt)
+                    : results[leader];
+        });
+        log.info("Finalized batch: {} completed, {} failed",
+                savedReceipts.size(), reserved.size() - savedReceipts.size());
+    }
 
-            log.info("Receipt generated successfully with ID: {}", savedReceipt.getReceiptId());
+    private Optional<PaymentResponse> findReplay(PaymentRequest request) {
+        if (request.getIdempotencyKey().isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<PaymentResponse> replay =
+                idempotencyStore.find(request.getUserInfo().getUserId(), request.getIdempotencyKey());
+        replay.ifPresent(r -> log.info("Replaying response of payment {} for idempotency key {}",
+                r.getPaymentId(), request.getIdempotencyKey()));
+        return replay;
+    }
 
-            // Build and return success response
-            return buildSuccessResponse(savedPayment, savedReceipt);
+    /**
+     * Stores a finalized (completed or declined) response for replay under the request's idempotency key
+     */
+    private PaymentResponse rememberResponse(PaymentRequest request, PaymentResponse response) {
+        if (!request.getIdempotencyKey().isEmpty()) {
+            idempotencyStore.save(request.getUserInfo().getUserId(), request.getIdempotencyKey(), response);
+        }
+        return response;
+    }
+
+    /**
+     * Writes the final status of a PROCESSING reservation, mirrors it on the
+     * detached entity and queues its outbox event in the same transaction,
+     * where a completion also adds to the user's spend totals
+     *
+     * @throws IllegalStateException when the payment was finalized elsewhere in the meantime
+     */
+    private void finalizeReservation(Payment payment, Payment.PaymentStatus status,
+                                     String transactionReference, String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = paymentRepository.finalizeProcessing(
+                payment.getId(), status, transactionReference, errorMessage, now);
+        if (updated != 1) {
+            throw new IllegalStateException("Payment " + payment.getPaymentId() + " is no longer PROCESSING");
+        }
+        changeStatus(payment, status);
+        payment.setTransactionReference(transactionReference);
+        payment.setPaymentErrorMessage(errorMessage);
+        payment.setUpdatedAt(now);
+        outbox.recordFinalStatus(payment);
+        if (status == Payment.PaymentStatus.COMPLETED) {
+            spendTotals.recordCompleted(payment, now);
+        }
+    }
+
+    /**
+     * Sets a payment's status, drops its cached GetPaymentById response and
+     * keeps reads of it on the primary for the read-your-writes window
+     */
+    private void changeStatus(Payment payment, Payment.PaymentStatus status) {
+        payment.setPaymentStatus(status);
+        responseCache.invalidate(payment.getPaymentId());
+        recentWrites.recordPayment(payment);
+    }
+
+    /**
+     * Whether a payment future failed because paymentExecutor refused the
+     * finalization hand-off. Callers should report the service as unavailable.
+     */
+    public static boolean isRejected(Throwable e) {
+        return e instanceof CompletionException && e.getCause() instanceof RejectedExecutionException;
+    }
 
+    /**
+     * Best-effort release of a reservation whose finalization blew up, so the
+     * PROCESSING row does not block the user from retrying
+     */
+    private void markFailed(Payment payment, String errorMessage) {
+        try {
+            // Only a still-PROCESSING reservation is released; a finalized payment keeps its status
+            transactionTemplate.executeWithoutResult(status -> {
+                if (paymentRepository.finalizeProcessing(payment.getId(), Payment.PaymentStatus.FAILED,
+                        null, errorMessage, LocalDateTime.now()) == 1) {
+                    changeStatus(payment, Payment.PaymentStatus.FAILED);
+                    payment.setPaymentErrorMessage(errorMessage);
+                    outbox.recordFinalStatus(payment);
+                }
+            });
         } catch (Exception e) {
-            log.error("Error processing payment", e);
-            return buildErrorResponse("An error occurred while processing your payment: " + e.getMessage());
+            log.error("Could not mark payment {} as failed", payment.getPaymentId(), e);
         }
     }
 
     /**
-     * Get payment by ID
+     * Issues receipts for completed payments whose queued receipt was lost,
+     * e.g. in a crash before the async writer got to it. Only runs when
+     * receipts are written asynchronously. On PostgreSQL one node sweeps at a
+     * time, holding an advisory lock; each receipt is inserted in its own
+     * transaction, and only if the payment still has none.
+     */
+    @Scheduled(fixedDelayString = "${payment.receipt.async.repair-interval:PT5M}")
+    public void repairMissingReceipts() {
+        if (!receiptWriter.isAsync()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        TransactionTemplate perReceipt = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        perReceipt.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Integer repaired = transactionTemplate.execute(status -> {
+            if (databaseProduct.isPostgres() && !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, RECEIPT_REPAIR_LOCK_KEY))) {
+                return 0;
+            }
+            int count = 0;
+            for (Payment payment : paymentRepository.findCompletedWithoutReceipt(
+                    now.minus(receiptRepairLookback), now.minus(receiptRepairGrace), Limit.of(500))) {
+                if (receiptWriter.pending(payment.getPaymentId()).isEmpty() && reissueReceipt(payment, perReceipt)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        if (repaired != null && repaired > 0) {
+            log.warn("Re-issued {} missing receipts", repaired);
+        }
+    }
+
+    private boolean reissueReceipt(Payment payment, TransactionTemplate perReceipt) {
+        try {
+            return Boolean.TRUE.equals(perReceipt.execute(status -> {
+                if (receiptRepository.existsByPaymentId(payment.getPaymentId())) {
+                    return false;
+                }
+                receiptRepository.save(createReceipt(payment));
+                // Cached responses still carry the lost receipt's id
+                responseCache.invalidate(payment.getPaymentId());
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // The payment got its receipt since the check (receipts.payment_id is unique)
+            return false;
+        }
+    }
+
+    /**
+     * Get payment by ID. Served by a replica when routing is enabled, unless
+     * the payment was just written by this node.
      */
     @Transactional(readOnly = true)
     public PaymentResponse getPaymentById(int paymentId) {
         log.info("Retrieving payment with ID: {}", paymentId);
-        var pOpt = paymentRepository.findByPaymentId(paymentId);
-        if (pOpt.isPresent()) {
-            var p = pOpt.get();
-            var receipt = receiptRepository.findByPaymentId(paymentId).orElse(null);
-            return buildSuccessResponse(p, receipt);
+        PaymentResponse cached = responseCache.get(paymentId);
+        if (cached != null) {
+            return cached;
         }
+        try (ReadRouting.Scope ignored = ReadRouting.primaryIf(recentWrites.isRecentId(paymentId))) {
+            return findPaymentById(paymentId);
+        }
+    }
 
-        var rOpt = receiptRepository.findById(paymentId); // JPA default findById(@Id)
-        if (rOpt.isPresent()) {
-            var r = rOpt.get();
-            var p = r.getPayment(); // ensure Receipt has @ManyToOne Payment
-            return buildSuccessResponse(p, r);
+    private PaymentResponse findPaymentById(int paymentId) {
+
+        // The id is a payment id or, failing that, a receipt id; both are resolved by one query,
+        // which on partitioned tables skips the archived months that cannot hold the id
+        Optional<LocalDateTime> since = partitionManager.lowerBoundFor(paymentId);
+        List<PaymentWithReceipt> found = since.isPresent()
+                ? paymentRepository.findByPaymentOrReceiptIdSince(paymentId, since.get(), Limit.of(1))
+                : paymentRepository.findByPaymentOrReceiptId(paymentId, Limit.of(1));
+        if (!found.isEmpty()) {
+            var p = found.get(0).payment();
+            var receipt = receiptOf(p, found.get(0).receipt());
+            return cacheResponse(paymentId, p, buildSuccessResponse(p, receipt));
+        }
+        if (receiptWriter.isAsync()) {
+            // A receipt id whose row is still queued, or was written since the lookup above
+            Optional<Receipt> pending = receiptWriter.pendingReceipt(paymentId)
+                    .or(() -> receiptRepository.findByReceiptId(paymentId));
+            if (pending.isPresent()) {
+                Payment p = pending.get().getPayment();
+                return cacheResponse(paymentId, p, buildSuccessResponse(p, pending.get()));
+            }
         }
         return buildErrorResponse("Not found. No payment with ID " + paymentId + " and no receipt with ID " + paymentId);
 //        return paymentRepository.findByPaymentId(paymentId)
@@ -190,21 +704,102 @@ public class PaymentService {
 //                .orElseGet(() -> buildErrorResponse("Payment not found with ID: " + paymentId));
     }
 
+    private PaymentResponse cacheResponse(int id, Payment payment, PaymentResponse response) {
+        responseCache.put(id, payment.getPaymentStatus(), response);
+        return response;
+    }
+
     /**
-     * Get payment history for a user
+     * Get payment history for a user. Payments and receipts come back from a
+     * single query; when a cursor is given the page continues after it by
+     * keyset, otherwise {@code page} is used as an offset.
      */
-    public List<PaymentResponse> getPaymentHistory(int userId, int page, int size) {
+    @Transactional(readOnly = true)
+    public PaymentHistoryResponse getPaymentHistory(int userId, int page, int size, String cursor) {
         log.info("Retrieving payment history for user: {}", userId);
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<Payment> paymentsPage = paymentRepository.findByUserId(userId, pageable);
+        try (ReadRouting.Scope ignored = ReadRouting.primaryIf(recentWrites.isRecentUser(userId))) {
+            return findPaymentHistory(userId, page, size, cursor);
+        }
+    }
+
+    private PaymentHistoryResponse findPaymentHistory(int userId, int page, int size, String cursor) {
+        int pageSize = size <= 0 ? DEFAULT_HISTORY_PAGE_SIZE : Math.min(size, MAX_HISTORY_PAGE_SIZE);
+        long totalCount = paymentRepository.countByUserId(userId);
+
+        List<PaymentWithReceipt> rows;
+        boolean hasNext;
+        if (cursor != null && !cursor.isBlank()) {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            // One extra row tells us whether there is a next page
+            rows = paymentRepository.findHistoryByUserIdBefore(
+                    userId, after.createdAt(), after.paymentId(), Limit.of(pageSize + 1));
+            hasNext = rows.size() > pageSize;
+        } else {
+            int pageIndex = Math.max(page, 0);
+            rows = paymentRepository.findHistoryByUserId(userId, PageRequest.of(pageIndex, pageSize));
+            hasNext = (pageIndex + 1L) * pageSize < totalCount;
+        }
 
-        return paymentsPage.getContent().stream()
-                .map(payment -> {
-                    Receipt receipt = receiptRepository.findByPaymentId(payment.getPaymentId()).orElse(null);
-                    return buildSuccessResponse(payment, receipt);
-                })
-                .collect(Collectors.toList());
+        PaymentHistoryResponse.Builder response = PaymentHistoryResponse.newBuilder()
+                .setTotalCount((int) Math.min(totalCount, Integer.MAX_VALUE));
+        int returned = Math.min(rows.size(), pageSize);
+        for (int i = 0; i < returned; i++) {
+            PaymentWithReceipt row = rows.get(i);
+            response.addPayments(buildSuccessResponse(row.payment(), receiptOf(row.payment(), row.receipt())));
+        }
+        if (hasNext && returned > 0) {
+            Payment last = rows.get(returned - 1).payment();
+            response.setNextCursor(new HistoryCursor(last.getCreatedAt(), last.getPaymentId()).encode());
+        }
+        return response.build();
+    }
+
+    /**
+     * Walks a user's whole payment history through a database cursor and hands
+     * each payment to {@code sink} as it is read. Rows are detached once sent,
+     * so memory stays flat regardless of history size; {@code sink} may block
+     * to apply back-pressure.
+     */
+    @Transactional(readOnly = true)
+    public void streamPaymentHistory(int userId, Consumer<PaymentResponse> sink) {
+        log.info("Streaming payment history for user: {}", userId);
+
+        long sent = 0;
+        try (ReadRouting.Scope ignored = ReadRouting.primaryIf(recentWrites.isRecentUser(userId));
+             Stream<PaymentWithReceipt> rows = paymentRepository.streamHistoryByUserId(userId)) {
+            Iterator<PaymentWithReceipt> it = rows.iterator();
+            while (it.hasNext()) {
+                PaymentWithReceipt row = it.next();
+                sink.accept(buildSuccessResponse(row.payment(), receiptOf(row.payment(), row.receipt())));
+                entityManager.detach(row.payment());
+                if (row.receipt() != null) {
+                    entityManager.detach(row.receipt());
+                }
+                sent++;
+            }
+        }
+        log.info("Streamed {} payments for user: {}", sent, userId);
+    }
+
+    /**
+     * Completed-payment totals of a user, read from the maintained aggregate
+     * in one primary-key lookup. Served by the primary for the read-your-writes
+     * window after this node changed one of the user's payments.
+     */
+    @Transactional(readOnly = true)
+    public UserSpendSummaryResponse getUserSpendSummary(int userId) {
+        UserSpendSummaryResponse.Builder response = UserSpendSummaryResponse.newBuilder().setUserId(userId);
+        try (ReadRouting.Scope ignored = ReadRouting.primaryIf(recentWrites.isRecentUser(userId))) {
+            spendTotals.find(userId).ifPresent(totals -> {
+                response.setTotalPaid(totals.getTotalPaid().doubleValue())
+                        .setPaymentCount(totals.getPaymentCount());
+                if (totals.getLastPaymentAt() != null) {
+                    response.setLastPaymentAt(totals.getLastPaymentAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                }
+            });
+        }
+        return response.build();
     }
 
     /**
@@ -225,13 +820,9 @@ public class PaymentService {
      * Calculate shipping cost with surcharge for expedited shipping
      */
     public int calculateShippingCost(ShippingInfo shippingInfo) {
-        int baseCost = shippingInfo.getShippingCost(); // proto int32 dollars
-        if (shippingInfo.getShippingType() == ShippingType.EXPEDITED) {
-            return baseCost + expeditedSurcharge;      // int dollars
-        }
-        return baseCost;
+        return pricingEngine.shippingCost(shippingInfo);
     }
-    // compute total (item + shipping + HST) using BigDecimal helpers
+    // compute total (item + shipping + HST) in cents
     public double calculateTotalCost(PaymentRequest request) {
         // guard against negative item cost (optional, you can also throw)
         int itemCostInt = Math.max(0, request.getItemCost());
@@ -239,46 +830,54 @@ public class PaymentService {
         // server is source-of-truth for shipping cost
         int shippingCostInt = calculateShippingCost(request.getShippingInfo());
 
-        BigDecimal itemBD     = money(itemCostInt);
-        BigDecimal shippingBD = money(shippingCostInt);
-        BigDecimal subTotalBD = itemBD.add(shippingBD);
-
-        BigDecimal hstBD   = subTotalBD
-                .multiply(BigDecimal.valueOf(hstRate))
-                .setScale(SCALE, ROUND);
-
-        BigDecimal totalBD = subTotalBD
-                .add(hstBD)
-                .setScale(SCALE, ROUND);
-
-        return totalBD.doubleValue();
+        return pricingEngine.quote(itemCostInt, shippingCostInt, request.getUserInfo().getProvince())
+                .totalAmount();
     }
 
     public TotalCostResponse TotalCost(PaymentRequest request) {
         int itemCostInt     = Math.max(0, request.getItemCost());
         int shippingCostInt = calculateShippingCost(request.getShippingInfo()); // applies expedited surcharge
 
-        BigDecimal itemBD     = money(itemCostInt);
-        BigDecimal shippingBD = money(shippingCostInt);
-        BigDecimal subTotalBD = itemBD.add(shippingBD);
-
-        BigDecimal hstBD = subTotalBD
-                .multiply(BigDecimal.valueOf(hstRate))
-                .setScale(SCALE, ROUND);
-
-        BigDecimal totalBD = subTotalBD
-                .add(hstBD)
-                .setScale(SCALE, ROUND);
+        PricingEngine.Quote quote = pricingEngine.quote(
+                itemCostInt, shippingCostInt, request.getUserInfo().getProvince());
 
         return TotalCostResponse.newBuilder()
-                .setTotalCost(totalBD.doubleValue())
+                .setTotalCost(quote.totalAmount())
                 .setMessage("Total cost calculated")
                 .setItemCost(itemCostInt)
-                .setHstRate(hstRate)
-                .setHstAmount(hstBD.doubleValue())
+                .setHstRate(quote.hstRate())
+                .setHstAmount(quote.hstAmount())
                 .build();
     }
 
+    /**
+     * Prices a batch of items (e.g. a catalog page), one response per request in request order
+     */
+    public List<TotalCostResponse> totalCosts(List<PaymentRequest> requests) {
+        List<TotalCostResponse> responses = new ArrayList<>(requests.size());
+        for (PaymentRequest request : requests) {
+            responses.add(TotalCost(request));
+        }
+        return responses;
+    }
+
+    /**
+     * Prices the request and builds the PROCESSING payment entity for it
+     */
+    private Payment buildPayment(PaymentRequest request) {
+        // ints from proto (whole dollars)
+        int itemCostInt     = request.getItemCost();                 // already int32
+        int shippingCostInt = calculateShippingCost(request.getShippingInfo()); // returns int
+
+        PricingEngine.Quote quote = pricingEngine.quote(
+                itemCostInt, shippingCostInt, request.getUserInfo().getProvince());
+        log.debug("Payment calculation - Item: ${}, Shipping: ${}, HST: ${}, Total: ${}",
+                itemCostInt, shippingCostInt, quote.hstAmount(), quote.totalAmount());
+
+        return createPaymentEntity(
+                request, itemCostInt, shippingCostInt, quote.hstAmount(), quote.totalAmount());
+    }
+
     /**
      * Create payment entity from request
      */
@@ -307,6 +906,7 @@ public class PaymentService {
         cardInfo.setExpiryDate(request.getCreditCardInfo().getExpiryDate());
 
         return Payment.builder()
+                .paymentId(idGenerator.nextPaymentId())
                 .userId(request.getUserInfo().getUserId())
                 .itemId(request.getItemId())
                 .itemCost(itemCostInt)          // Integer in entity
@@ -322,23 +922,6 @@ public class PaymentService {
                 .build();
     }
 
-    /**
-     * Simulate payment processing (mock)
-     */
-    private boolean simulatePaymentProcessing(Payment payment) {
-        log.info("Simulating payment processing for payment ID: {}", payment.getPaymentId());
-
-        // In a real system, this would integrate with a payment gateway
-        // For now, we'll just simulate success
-        try {
-            Thread.sleep(500); // Simulate processing delay
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-
-        return true; // Mock success
-    }
-
     /**
      * Create receipt from payment
      */
@@ -346,8 +929,13 @@ public class PaymentService {
         double itemDisplay = money(payment.getItemCost()).doubleValue();   // 2-dp
         double shipDisplay = money(payment.getShippingCost()).doubleValue();
 
+        int receiptId = idGenerator.nextReceiptId();
+        recentWrites.recordReceipt(receiptId);
         return Receipt.builder()
+                .receiptId(receiptId)
+                .snapshot(receiptSnapshot(payment, receiptId))
                 .payment(payment)
+                .receiptNumber(idGenerator.nextReceiptNumber())
                 .customerName(payment.getAddress().getFirstName() + " " + payment.getAddress().getLastName())
                 .customerAddress(payment.getAddress().getFullAddress())
                 .itemId(payment.getItemId())
@@ -361,9 +949,24 @@ public class PaymentService {
     }
 
     /**
-     * Build success response with receipt info
+     * The stored receipt of a payment, or the one still queued in ReceiptWriter
+     */
+    private Receipt receiptOf(Payment payment, Receipt stored) {
+        if (stored != null || !receiptWriter.isAsync()
+                || payment.getPaymentStatus() != Payment.PaymentStatus.COMPLETED) {
+            return stored;
+        }
+        // The writer releases a receipt only after its row committed, so if it is
+        // no longer pending the row is visible now even if the first read missed it
+        return receiptWriter.pending(payment.getPaymentId())
+                .or(() -> receiptRepository.findByPaymentId(payment.getPaymentId()))
+                .orElse(null);
+    }
+
+    /**
+     * Build success response with receipt info (package-private for the benchmarks)
      */
-    private PaymentResponse buildSuccessResponse(Payment payment, Receipt receipt) {
+    PaymentResponse buildSuccessResponse(Payment payment, Receipt receipt) {
         PaymentResponse.Builder responseBuilder = PaymentResponse.newBuilder()
                 .setSuccess(true)
                 .setPaymentId(payment.getPaymentId())
@@ -371,30 +974,60 @@ public class PaymentService {
                 .setTransactionDate(payment.getCreatedAt().format(DateTimeFormatter.ISO_DATE_TIME));
 
         if (receipt != null) {
-            double itemDisplay = money(payment.getItemCost()).doubleValue();
-            double shipDisplay = money(payment.getShippingCost()).doubleValue();
-
-            ReceiptInfo receiptInfo = ReceiptInfo.newBuilder()
-                    .setReceiptId(receipt.getReceiptId())
-                    .setFirstName(payment.getAddress().getFirstName())
-                    .setLastName(payment.getAddress().getLastName())
-                    .setFullAddress(payment.getAddress().getFullAddress())
-                    .setItemCost(payment.getItemCost())
-                    .setShippingCost(payment.getShippingCost())
-                    .setHstAmount(payment.getHstAmount())
-                    .setTotalPaid(payment.getTotalAmount())
-                    .setItemId(payment.getItemId())
-                    .build();
+            addReceipt(responseBuilder, payment, receipt);
+        }
 
-            String shippingMessage = String.format("The item will be shipped in %d days",
-                    payment.getEstimatedShippingDays());
+        return responseBuilder.build();
+    }
 
-            responseBuilder.setReceiptInfo(receiptInfo)
-                    .setShippingMessage(shippingMessage);
+    /**
+     * Adds receipt_info and shipping_message. Receipts are immutable, so a
+     * receipt issued with a snapshot has both spliced in as stored; older
+     * receipts without one are mapped from the payment.
+     */
+    private void addReceipt(PaymentResponse.Builder response, Payment payment, Receipt receipt) {
+        if (receipt.getSnapshot() != null) {
+            try {
+                response.mergeFrom(receipt.getSnapshot());
+                return;
+            } catch (InvalidProtocolBufferException e) {
+                log.warn("Unreadable snapshot of receipt {}, rebuilding it", receipt.getReceiptId(), e);
+            }
         }
+        response.setReceiptInfo(receiptInfo(payment, receipt.getReceiptId()))
+                .setShippingMessage(shippingMessage(payment));
+    }
 
-        return responseBuilder.build();
+    /**
+     * Encoded receipt_info and shipping_message of a new receipt, stored with
+     * it (package-private for the benchmarks)
+     */
+    static byte[] receiptSnapshot(Payment payment, int receiptId) {
+        return PaymentResponse.newBuilder()
+                .setReceiptInfo(receiptInfo(payment, receiptId))
+                .setShippingMessage(shippingMessage(payment))
+                .build()
+                .toByteArray();
     }
+
+    private static ReceiptInfo receiptInfo(Payment payment, int receiptId) {
+        return ReceiptInfo.newBuilder()
+                .setReceiptId(receiptId)
+                .setFirstName(payment.getAddress().getFirstName())
+                .setLastName(payment.getAddress().getLastName())
+                .setFullAddress(payment.getAddress().getFullAddress())
+                .setItemCost(payment.getItemCost())
+                .setShippingCost(payment.getShippingCost())
+                .setHstAmount(payment.getHstAmount())
+                .setTotalPaid(payment.getTotalAmount())
+                .setItemId(payment.getItemId())
+                .build();
+    }
+
+    private static String shippingMessage(Payment payment) {
+        return String.format("The item will be shipped in %d days", payment.getEstimatedShippingDays());
+    }
+
     //standard response for duplicate purchase attempts
     private PaymentResponse duplicateResponse(Payment existing, Receipt receipt) {
         String now = java.time.LocalDateTime.now()
@@ -402,30 +1035,35 @@ public class PaymentService {
 
         PaymentResponse.Builder b = PaymentResponse.newBuilder()
                 .setSuccess(false)
-                .setMessage("You already purchased this item. Duplicate payment is not allowed.")
+                .setMessage(DUPLICATE_PAYMENT_MESSAGE)
                 .setTransactionDate(now);
 
         if (existing != null) {
             b.setPaymentId(existing.getPaymentId());
         }
         if (existing != null && receipt != null) {
-            ReceiptInfo ri = ReceiptInfo.newBuilder()
-                    .setReceiptId(receipt.getReceiptId())
-                    .setFirstName(existing.getAddress().getFirstName())
-                    .setLastName(existing.getAddress().getLastName())
-                    .setFullAddress(existing.getAddress().getFullAddress())
-                    .setItemCost(existing.getItemCost())
-                    .setShippingCost(existing.getShippingCost())
-                    .setHstAmount(existing.getHstAmount())
-                    .setTotalPaid(existing.getTotalAmount())
-                    .setItemId(existing.getItemId())
-                    .build();
-            b.setReceiptInfo(ri)
-                    .setShippingMessage("The item will be shipped in " + existing.getEstimatedShippingDays() + " days");
+            addReceipt(b, existing, receipt);
         }
         return b.build();
     }
 
+    /**
+     * Response for a request that waited on an in-flight payment for the same
+     * user and item under another idempotency key (or none): a successful
+     * payment is reported as a duplicate of it, a failed one is passed
+     * through so the caller can retry
+     */
+    private PaymentResponse sharedOutcome(PaymentResponse leader) {
+        if (!leader.getSuccess()) {
+            return leader;
+        }
+        return leader.toBuilder()
+                .setSuccess(false)
+                .setMessage(DUPLICATE_PAYMENT_MESSAGE)
+                .setTransactionDate(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .build();
+    }
+
     /**
      * Build error response
      */
@@ -435,4 +1073,25 @@ public class PaymentService {
                 .setMessage(errorMessage)
                 .build();
     }
+
+    /**
+     * Either the reserved payment or, when no reservation was made, the response to return
+     */
+    private record Reservation(Payment payment, PaymentResponse response) {
+    }
+
+    /**
+     * Payments reserved for a batch, aligned with the request indexes they answer,
+     * plus in-batch repeats mapped to the request they follow
+     */
+    private record BatchReservation(List<Integer> indexes, List<Payment> payments,
+                                    Map<Integer, Integer> followers) {
+    }
+
+    private static Payment preferCompleted(Payment a, Payment b) {
+        if (a.getPaymentStatus() != b.getPaymentStatus()) {
+            return a.getPaymentStatus() == Payment.PaymentStatus.COMPLETED ? a : b;
+        }
+        return a.getCreatedAt().isAfter(b.getCreatedAt()) ? a : b;
+    }
 }
@@ -0,0 +1,55 @@
+package com.ecommerce.payment.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for each stage of processPayment, published as
+ * {@code payment.process.stage{stage=...}}. Timers are registered up front and
+ * looked up by ordinal, so recording a stage does not allocate.
+ */
+@Component
+public class PaymentStageMetrics {
+
+    public enum Stage {
+        /** Replay lookup for requests carrying an idempotency key */
+        IDEMPOTENCY_LOOKUP,
+        /** Credit card checks */
+        VALIDATION,
+        /** Duplicate check and PROCESSING insert, including a conflict re-check */
+        RESERVATION,
+        /** The duplicate check alone, part of RESERVATION */
+        DUPLICATE_CHECK,
+        /** Gateway authorization, until its answer arrives */
+        GATEWAY,
+        /** Status update and receipt in the finalization transaction */
+        FINALIZATION,
+        /** Building the receipt and saving or queueing it, part of FINALIZATION */
+        RECEIPT
+    }
+
+    private final Timer[] timers;
+
+    public PaymentStageMetrics(MeterRegistry registry) {
+        Stage[] stages = Stage.values();
+        timers = new Timer[stages.length];
+        for (Stage stage : stages) {
+            timers[stage.ordinal()] = Timer.builder("payment.process.stage")
+                    .description("Time spent in one stage of ProcessPayment")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Records the time from {@code startNanos} (a {@link System#nanoTime()} reading) until now
+     */
+    public void recordSince(Stage stage, long startNanos) {
+        timers[stage.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,130 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.grpc.ShippingInfo;
+import com.ecommerce.payment.grpc.ShippingType;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Item + shipping + sales tax pricing on long cents. The tax rate is resolved
+ * from the buyer's province through a {@link TaxRateTable}. When
+ * payment.tax.rates-file is set, the table is reloaded whenever that file
+ * changes and swapped in without blocking pricing; every node reading the same
+ * file (e.g. a mounted ConfigMap) converges on the same rates, and a restart
+ * keeps them.
+ */
+@Component
+@Slf4j
+public class PricingEngine {
+
+    // Doubles represent every cents value below this exactly, so cents / 100.0 is correctly rounded
+    private static final long EXACT_DOUBLE_LIMIT = 1L << 52;
+
+    @Value("${payment.hst.rate:0.13}")
+    private double hstRate;
+
+    @Value("${payment.tax.rates:AB:0.05,BC:0.12,MB:0.12,NB:0.15,NL:0.15,NS:0.14,NT:0.05,NU:0.05,ON:0.13,PE:0.15,QC:0.14975,SK:0.11,YT:0.05}")
+    private String taxRates;
+
+    // Same format as payment.tax.rates, one or more entries per line; overrides it when set
+    @Value("${payment.tax.rates-file:}")
+    private String ratesFile;
+
+    @Value("${payment.shipping.expedited.surcharge:10}")
+    private int expeditedSurcharge;
+
+    private volatile TaxRateTable rateTable;
+    private String ratesFileSpec;
+
+    @PostConstruct
+    public void init() throws IOException {
+        rateTable = TaxRateTable.parse(taxRates, hstRate);
+        if (!ratesFile.isEmpty()) {
+            // A missing or malformed file fails startup rather than pricing with other rates
+            loadRatesFile();
+        }
+    }
+
+    public TaxRateTable getRateTable() {
+        return rateTable;
+    }
+
+    /**
+     * Reloads the rates file if it changed since it was last read. A file that
+     * cannot be read or parsed leaves the current table in place.
+     */
+    @Scheduled(fixedDelayString = "${payment.tax.rates-file-check-interval:PT30S}")
+    public synchronized void reloadRatesFile() {
+        if (ratesFile.isEmpty()) {
+            return;
+        }
+        try {
+            loadRatesFile();
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Could not reload tax rates from {}, keeping the current table", ratesFile, e);
+        }
+    }
+
+    // Quotes in progress finish with the old table
+    private synchronized void loadRatesFile() throws IOException {
+        // Compared by content: a file is small, and mounted ConfigMaps change by symlink swap
+        String spec = Files.readString(Path.of(ratesFile)).replace('\n', ',').replace('\r', ',');
+        if (spec.equals(ratesFileSpec)) {
+            return;
+        }
+        rateTable = TaxRateTable.parse(spec, hstRate);
+        ratesFileSpec = spec;
+        log.info("Tax rates loaded from {}: {}", ratesFile, rateTable.asMap());
+    }
+
+    /**
+     * Shipping cost in whole dollars, with the surcharge for expedited shipping
+     */
+    public int shippingCost(ShippingInfo shippingInfo) {
+        int baseCost = shippingInfo.getShippingCost();
+        if (shippingInfo.getShippingType() == ShippingType.EXPEDITED) {
+            return baseCost + expeditedSurcharge;
+        }
+        return baseCost;
+    }
+
+    /**
+     * Prices an item for a buyer in {@code province}; both costs are whole
+     * dollars, shipping already including any surcharge
+     */
+    public Quote quote(int itemCost, int shippingCost, String province) {
+        TaxRateTable.Rate rate = rateTable.rateFor(province);
+        long subtotalCents = ((long) itemCost + shippingCost) * 100;
+        long hstCents = rate.taxCents(subtotalCents);
+        return new Quote(itemCost, shippingCost, rate.value(), hstCents, subtotalCents + hstCents);
+    }
+
+    static double toAmount(long cents) {
+        if (Math.abs(cents) < EXACT_DOUBLE_LIMIT) {
+            return cents / 100.0;
+        }
+        return BigDecimal.valueOf(cents, 2).doubleValue();
+    }
+
+    /**
+     * Price of one item. Amounts are exposed as doubles rounded to the cent, as stored on payments.
+     */
+    public record Quote(int itemCost, int shippingCost, double hstRate, long hstCents, long totalCents) {
+
+        public double hstAmount() {
+            return toAmount(hstCents);
+        }
+
+        public double totalAmount() {
+            return toAmount(totalCents);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Receipt;
+import com.ecommerce.payment.repository.ReceiptRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional write-behind for receipts (payment.receipt.write-mode=ASYNC). A
+ * completed payment hands its receipt to a bounded queue instead of inserting
+ * it in the finalization transaction, and a single writer thread groups
+ * queued receipts into batched inserts. Receipts stay readable through
+ * {@link #pending} until their row has committed. A receipt that cannot be
+ * written within max-retry of its submission is given up on and left to the
+ * repair sweep, whose grace period must therefore be longer.
+ */
+@Component
+@Slf4j
+public class ReceiptWriter {
+
+    public enum WriteMode {
+        SYNC,
+        ASYNC
+    }
+
+    private final ReceiptRepository receiptRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final WriteMode mode;
+    private final int batchSize;
+    private final Duration maxDelay;
+    private final Duration maxRetry;
+    private final BlockingQueue<Queued> queue;
+    private final Map<Integer, Receipt> pendingByPaymentId = new ConcurrentHashMap<>();
+    private final Map<Integer, Receipt> pendingByReceiptId = new ConcurrentHashMap<>();
+    private final Counter written;
+    private final Counter queueFull;
+    private final Counter failures;
+    private Thread writer;
+    private volatile boolean running;
+
+    public ReceiptWriter(
+            ReceiptRepository receiptRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry registry,
+            @Value("${payment.receipt.write-mode:SYNC}") WriteMode mode,
+            @Value("${payment.receipt.async.queue-capacity:10000}") int queueCapacity,
+            @Value("${payment.receipt.async.batch-size:200}") int batchSize,
+            @Value("${payment.receipt.async.max-delay:PT0.01S}") Duration maxDelay,
+            @Value("${payment.receipt.async.max-retry:PT2M}") Duration maxRetry,
+            @Value("${payment.receipt.async.repair-grace:PT5M}") Duration repairGrace) {
+        if (queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Receipt queue capacity and batch size must be positive");
+        }
+        // Otherwise the sweep could re-issue a receipt the writer is still retrying
+        if (mode == WriteMode.ASYNC && repairGrace.compareTo(maxRetry) <= 0) {
+            throw new IllegalArgumentException("payment.receipt.async.repair-grace (" + repairGrace
+                    + ") must be longer than payment.receipt.async.max-retry (" + maxRetry + ")");
+        }
+        this.receiptRepository = receiptRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.maxDelay = maxDelay;
+        this.maxRetry = maxRetry;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("payment.receipts.pending", pendingByPaymentId, Map::size)
+                .description("Receipts issued but not yet written")
+                .register(registry);
+        this.written = Counter.builder("payment.receipts.written")
+                .description("Receipts inserted by the async writer")
+                .register(registry);
+        this.queueFull = Counter.builder("payment.receipts.queue_full")
+                .description("Receipts that had to wait for room in the write queue")
+                .register(registry);
+        this.failures = Counter.builder("payment.receipts.write_failures")
+                .description("Async receipt batches that failed and were retried")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Receipt write mode: {}", mode);
+        if (mode != WriteMode.ASYNC) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "payment-receipt-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the receipt of a payment completed in the current transaction.
+     * It is readable through {@link #pending} right away and handed to the
+     * writer once the transaction commits (dropped if it rolls back). A full
+     * queue blocks the committing thread, which is the pipeline's back-pressure.
+     */
+    public void submit(Receipt receipt) {
+        if (mode != WriteMode.ASYNC) {
+            throw new IllegalStateException("Receipts are written synchronously");
+        }
+        pendingByPaymentId.put(receipt.getPayment().getPaymentId(), receipt);
+        pendingByReceiptId.put(receipt.getReceiptId(), receipt);
+        Queued queued = new Queued(receipt, System.nanoTime() + maxRetry.toNanos());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(queued);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    enqueue(queued);
+                } else {
+                    release(receipt);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queued receipt of the given payment, until its row has been written
+     */
+    public Optional<Receipt> pending(int paymentId) {
+        return pendingByPaymentId.isEmpty() ? Optional.empty()
+                : Optional.ofNullable(pendingByPaymentId.get(paymentId));
+    }
+
+    /**
+     * Queued receipt with the given receipt id, until its row has been written
+     */
+    public Optional<Receipt> pendingReceipt(int receiptId) {
+        return pendingByReceiptId.isEmpty() ? Optional.empty()
+                : Optional.ofNullable(pendingByReceiptId.get(receiptId));
+    }
+
+    /**
+     * Stops accepting receipts and writes out whatever is still queued
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        // Receipts that raced the shutdown flag are written here
+        List<Queued> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+        }
+    }
+
+    public boolean isAsync() {
+        return mode == WriteMode.ASYNC;
+    }
+
+    private void enqueue(Queued queued) {
+        if (queue.offer(queued)) {
+            return;
+        }
+        queueFull.increment();
+        try {
+            // After shutdown nobody drains the queue, so only wait while the writer runs
+            while (running && System.nanoTime() < queued.giveUpAt()) {
+                if (queue.offer(queued, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Receipt receipt = queued.receipt();
+        log.error("Could not queue receipt {} of payment {}; the repair sweep will re-issue it",
+                receipt.getReceiptId(), receipt.getPayment().getPaymentId());
+        release(receipt);
+    }
+
+    private void writeLoop() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Queued first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Linger briefly so receipts arriving together share one batch
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Queued next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts the batch in one transaction. Transient failures are retried
+     * with backoff while the receipts stay readable as pending, until
+     * max-retry after submission; a receipt violating a constraint or out of
+     * time is dropped.
+     */
+    private void writeBatch(List<Queued> batch) throws InterruptedException {
+        List<Receipt> receipts = batch.stream().map(Queued::receipt).toList();
+        long backoffMillis = 100;
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> receiptRepository.saveAll(receipts));
+                receipts.forEach(this::release);
+                written.increment(receipts.size());
+                return;
+            } catch (RuntimeException e) {
+                failures.increment();
+                if (batch.size() > 1) {
+                    // One bad receipt must not hold back the rest
+                    log.error("Writing {} receipts failed, retrying them one by one", batch.size(), e);
+                    for (Queued queued : batch) {
+                        writeBatch(List.of(queued));
+                    }
+                    return;
+                }
+                Receipt receipt = receipts.get(0);
+                if (e instanceof DataIntegrityViolationException) {
+                    // Retrying cannot help; the repair sweep re-issues the receipt if the payment has none
+                    log.error("Dropping receipt {} of payment {}", receipt.getReceiptId(),
+                            receipt.getPayment().getPaymentId(), e);
+                    release(receipt);
+                    return;
+                }
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(batch.get(0).giveUpAt() - System.nanoTime());
+                if (remainingMillis < backoffMillis) {
+                    // Past this point the repair sweep may re-issue it, so the writer must not insert it
+                    log.error("Giving up on receipt {} of payment {} after {}; the repair sweep will re-issue it",
+                            receipt.getReceiptId(), receipt.getPayment().getPaymentId(), maxRetry, e);
+                    release(receipt);
+                    return;
+                }
+                log.error("Writing receipt {} failed, retrying in {} ms", receipt.getReceiptId(), backoffMillis, e);
+                Thread.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, 10_000);
+            }
+        }
+    }
+
+    private void release(Receipt receipt) {
+        pendingByPaymentId.remove(receipt.getPayment().getPaymentId(), receipt);
+        pendingByReceiptId.remove(receipt.getReceiptId(), receipt);
+    }
+
+    /**
+     * A queued receipt and the System.nanoTime() after which it is no longer written
+     */
+    private record Queued(Receipt receipt, long giveUpAt) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Payment;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Payment ids, receipt ids and users written by this node within the
+ * read-your-writes window. Reads touching them are pinned to the primary so
+ * a client never reads its own payment from a replica that has not caught
+ * up yet. Does nothing unless replica routing is enabled.
+ */
+@Component
+public class RecentWrites {
+
+    private final boolean enabled;
+    private final Cache<Integer, Boolean> ids;
+    private final Cache<Integer, Boolean> users;
+
+    public RecentWrites(
+            @Value("${payment.datasource.replicas.enabled:false}") boolean enabled,
+            @Value("${payment.datasource.replicas.read-your-writes-window:PT10S}") Duration window,
+            @Value("${payment.datasource.replicas.read-your-writes-max-size:100000}") long maxSize) {
+        this.enabled = enabled;
+        this.ids = Caffeine.newBuilder().expireAfterWrite(window).maximumSize(maxSize).build();
+        this.users = Caffeine.newBuilder().expireAfterWrite(window).maximumSize(maxSize).build();
+    }
+
+    public void recordPayment(Payment payment) {
+        if (enabled) {
+            ids.put(payment.getPaymentId(), Boolean.TRUE);
+            users.put(payment.getUserId(), Boolean.TRUE);
+        }
+    }
+
+    public void recordReceipt(int receiptId) {
+        if (enabled) {
+            ids.put(receiptId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Whether a payment or receipt with this id was written within the window
+     */
+    public boolean isRecentId(int id) {
+        return enabled && ids.getIfPresent(id) != null;
+    }
+
+    public boolean isRecentUser(int userId) {
+        return enabled && users.getIfPresent(userId) != null;
+    }
+}
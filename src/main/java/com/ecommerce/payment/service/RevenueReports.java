@@ -0,0 +1,128 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.grpc.RevenueBucket;
+import com.ecommerce.payment.grpc.RevenueReportResponse;
+import com.ecommerce.payment.grpc.RevenueSummary;
+import com.ecommerce.payment.repository.PaymentRepository;
+import com.ecommerce.payment.repository.RevenueRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Revenue reports over a created_at range. The database groups payments by
+ * bucket, status, shipping type and card type and returns one row per group,
+ * which is folded into the response here; no payment entity is loaded, so
+ * memory depends on the number of buckets rather than on the payments in range.
+ */
+@Service
+@Slf4j
+public class RevenueReports {
+
+    private static final String UNKNOWN_CARD_TYPE = "UNKNOWN";
+
+    private final PaymentRepository paymentRepository;
+    private final int maxBuckets;
+
+    public RevenueReports(PaymentRepository paymentRepository,
+                          @Value("${payment.revenue-report.max-buckets:2000}") int maxBuckets) {
+        this.paymentRepository = paymentRepository;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Revenue report for [from, to), served by a replica when routing is enabled
+     *
+     * @throws IllegalArgumentException when the range is malformed, empty or spans more than max-buckets buckets
+     */
+    @Transactional(readOnly = true)
+    public RevenueReportResponse report(String from, String to, RevenueBucket bucket) {
+        LocalDateTime start = parse("from", from);
+        LocalDateTime end = parse("to", to);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        boolean hourly = bucket == RevenueBucket.HOUR;
+        Duration width = hourly ? Duration.ofHours(1) : Duration.ofDays(1);
+        if (Duration.between(start, end).dividedBy(width) >= maxBuckets) {
+            throw new IllegalArgumentException("Range spans more than " + maxBuckets + " " + bucket + " buckets");
+        }
+
+        long started = System.nanoTime();
+        List<RevenueRow> rows = hourly
+                ? paymentRepository.revenueByHour(start, end)
+                : paymentRepository.revenueByDay(start, end);
+
+        Totals total = new Totals();
+        Map<LocalDateTime, Totals> buckets = new TreeMap<>();
+        for (RevenueRow row : rows) {
+            LocalDateTime bucketStart = hourly ? row.day().atTime(row.hour(), 0) : row.day().atStartOfDay();
+            total.add(row);
+            buckets.computeIfAbsent(bucketStart, k -> new Totals()).add(row);
+        }
+
+        RevenueReportResponse.Builder response = RevenueReportResponse.newBuilder()
+                .setTotal(total.toSummary().build());
+        buckets.forEach((bucketStart, totals) -> response.addBuckets(totals.toSummary()
+                .setBucketStart(bucketStart.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))));
+        log.info("Revenue report {} to {} by {}: {} groups in {} ms", start, end, bucket, rows.size(),
+                (System.nanoTime() - started) / 1_000_000);
+        return response.build();
+    }
+
+    private static LocalDateTime parse(String name, String value) {
+        try {
+            return value.length() == 10
+                    ? LocalDate.parse(value).atStartOfDay()
+                    : LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO-8601 local date or date-time: '" + value + "'");
+        }
+    }
+
+    /**
+     * Running sums of one bucket or of the whole range
+     */
+    private static final class Totals {
+        BigDecimal revenue = BigDecimal.ZERO;
+        BigDecimal hst = BigDecimal.ZERO;
+        long payments;
+        final Map<String, Long> byStatus = new TreeMap<>();
+        final Map<String, Long> byShippingType = new TreeMap<>();
+        final Map<String, Long> byCardType = new TreeMap<>();
+
+        void add(RevenueRow row) {
+            if (row.status() == Payment.PaymentStatus.COMPLETED) {
+                revenue = revenue.add(BigDecimal.valueOf(row.totalAmount()));
+                hst = hst.add(BigDecimal.valueOf(row.hstAmount()));
+            }
+            payments += row.payments();
+            byStatus.merge(row.status().name(), row.payments(), Long::sum);
+            byShippingType.merge(row.shippingType().name(), row.payments(), Long::sum);
+            byCardType.merge(row.cardType() == null ? UNKNOWN_CARD_TYPE : row.cardType(), row.payments(), Long::sum);
+        }
+
+        RevenueSummary.Builder toSummary() {
+            return RevenueSummary.newBuilder()
+                    .setRevenue(revenue.setScale(2, RoundingMode.HALF_UP).doubleValue())
+                    .setHstCollected(hst.setScale(2, RoundingMode.HALF_UP).doubleValue())
+                    .setPaymentCount(payments)
+                    .putAllCountByStatus(byStatus)
+                    .putAllCountByShippingType(byShippingType)
+                    .putAllCountByCardType(byCardType);
+        }
+    }
+}
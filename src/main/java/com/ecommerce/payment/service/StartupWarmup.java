@@ -0,0 +1,209 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Address;
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.entity.Receipt;
+import com.ecommerce.payment.grpc.CreditCardInfo;
+import com.ecommerce.payment.grpc.PaymentRequest;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import com.ecommerce.payment.grpc.ShippingInfo;
+import com.ecommerce.payment.grpc.ShippingType;
+import com.ecommerce.payment.grpc.TotalCostResponse;
+import com.ecommerce.payment.grpc.UserInfo;
+import com.ecommerce.payment.util.CreditCardValidator;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Runs the CPU-bound part of a payment (decoding the request, card checks,
+ * pricing, building and encoding the response and receipt snapshot) on
+ * synthetic requests until its p99 stops moving, so the JIT has compiled the
+ * hot paths before the first real payment. Application runners finish before
+ * Spring Boot reports the application ready, so the readiness probe stays down
+ * while this runs. Nothing touches the database or the gateway.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StartupWarmup implements ApplicationRunner {
+
+    // Valid Visa, Mastercard and Amex numbers plus one failing the Luhn check
+    private static final String[] CARD_NUMBERS = {
+            "4111 1111 1111 1111", "5500005555555559", "378282246310005", "4111111111111112"};
+    private static final String[] PROVINCES = {"ON", "QC", "BC", "Nova Scotia", "AB", "XX"};
+
+    private final CreditCardValidator creditCardValidator;
+    private final PaymentService paymentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payment.warmup.enabled:false}")
+    private boolean enabled;
+    // Synthetic payments per round; each round's p99 is compared with the previous one
+    @Value("${payment.warmup.round-size:2000}")
+    private int roundSize;
+    // Steady state: this many rounds in a row whose p99 is within tolerance of the round before
+    @Value("${payment.warmup.stable-rounds:3}")
+    private int stableRounds;
+    @Value("${payment.warmup.tolerance:0.10}")
+    private double tolerance;
+    @Value("${payment.warmup.max-duration:PT30S}")
+    private Duration maxDuration;
+
+    private volatile double warmupSeconds = Double.NaN;
+    private volatile double firstP99Seconds = Double.NaN;
+    private volatile double lastP99Seconds = Double.NaN;
+    // Keeps the results of the synthetic work alive so the JIT cannot drop it
+    private volatile long sink;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        registerGauges();
+        long started = System.nanoTime();
+        long deadline = started + maxDuration.toNanos();
+        long[] latencies = new long[roundSize];
+        long result = 0;
+        long firstP99 = -1;
+        long previousP99 = -1;
+        long p99 = 0;
+        int rounds = 0;
+        int stable = 0;
+        int seq = 0;
+        while (stable < stableRounds && System.nanoTime() < deadline) {
+            for (int i = 0; i < roundSize; i++) {
+                long start = System.nanoTime();
+                result += syntheticPayment(seq++);
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            p99 = latencies[(int) Math.ceil(roundSize * 0.99) - 1];
+            if (firstP99 < 0) {
+                firstP99 = p99;
+            }
+            stable = previousP99 > 0 && Math.abs(p99 - previousP99) <= previousP99 * tolerance ? stable + 1 : 0;
+            previousP99 = p99;
+            rounds++;
+        }
+        sink = result;
+
+        long elapsed = System.nanoTime() - started;
+        warmupSeconds = elapsed / 1e9;
+        firstP99Seconds = firstP99 / 1e9;
+        lastP99Seconds = p99 / 1e9;
+        if (stable >= stableRounds) {
+            log.info("Warm-up reached steady state in {} ms ({} rounds of {}): p99 {} us, first round {} us; "
+                            + "JVM up {} ms",
+                    elapsed / 1_000_000, rounds, roundSize, p99 / 1_000, firstP99 / 1_000,
+                    ManagementFactory.getRuntimeMXBean().getUptime());
+        } else {
+            log.warn("Warm-up stopped after {} ({} rounds of {}) without reaching steady state: p99 {} us, "
+                            + "first round {} us", maxDuration, rounds, roundSize, p99 / 1_000, firstP99 / 1_000);
+        }
+    }
+
+    private void registerGauges() {
+        Gauge.builder("payment.startup.warmup.duration", this, w -> w.warmupSeconds)
+                .description("Time the warm-up took to reach steady state, or its time limit")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("payment.startup.warmup.p99", this, w -> w.firstP99Seconds)
+                .description("p99 of one synthetic payment in a warm-up round")
+                .baseUnit("seconds")
+                .tag("round", "first")
+                .register(meterRegistry);
+        Gauge.builder("payment.startup.warmup.p99", this, w -> w.lastP99Seconds)
+                .description("p99 of one synthetic payment in a warm-up round")
+                .baseUnit("seconds")
+                .tag("round", "last")
+                .register(meterRegistry);
+    }
+
+    /**
+     * One payment's worth of CPU work on request {@code seq}; returns a value
+     * derived from every result
+     */
+    private long syntheticPayment(int seq) {
+        PaymentRequest request;
+        try {
+            // Requests arrive encoded, as they do over gRPC
+            request = PaymentRequest.parseFrom(syntheticRequest(seq).toByteArray());
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        CreditCardInfo card = request.getCreditCardInfo();
+        CreditCardValidator.ValidationResult validation = creditCardValidator.validateCreditCard(
+                card.getCardNumber(), card.getNameOnCard(), card.getExpiryDate(), card.getSecurityCode());
+        TotalCostResponse cost = paymentService.TotalCost(request);
+        if (!validation.isValid()) {
+            return cost.getSerializedSize() + PaymentResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("Payment validation failed: " + validation.getErrors())
+                    .build()
+                    .toByteArray().length;
+        }
+
+        UserInfo user = request.getUserInfo();
+        Payment payment = Payment.builder()
+                .paymentId(seq)
+                .userId(user.getUserId())
+                .itemId(request.getItemId())
+                .itemCost(request.getItemCost())
+                .shippingCost(paymentService.calculateShippingCost(request.getShippingInfo()))
+                .estimatedShippingDays(request.getShippingInfo().getEstimatedDays())
+                .hstAmount(cost.getHstAmount())
+                .totalAmount(cost.getTotalCost())
+                .paymentStatus(Payment.PaymentStatus.COMPLETED)
+                .address(Address.builder()
+                        .firstName(user.getFirstName())
+                        .lastName(user.getLastName())
+                        .street(user.getStreet())
+                        .number(user.getNumber())
+                        .province(user.getProvince())
+                        .country(user.getCountry())
+                        .postalCode(user.getPostalCode())
+                        .build())
+                .createdAt(LocalDateTime.now())
+                .build();
+        Receipt receipt = Receipt.builder()
+                .receiptId(seq)
+                .snapshot(PaymentService.receiptSnapshot(payment, seq))
+                .build();
+        return cost.getSerializedSize() + paymentService.buildSuccessResponse(payment, receipt).toByteArray().length;
+    }
+
+    private static PaymentRequest syntheticRequest(int seq) {
+        return PaymentRequest.newBuilder()
+                .setUserInfo(UserInfo.newBuilder()
+                        .setUserId(1 + seq % 10_000)
+                        .setFirstName("Warm").setLastName("Up")
+                        .setStreet("Main Street").setNumber(String.valueOf(1 + seq % 200))
+                        .setProvince(PROVINCES[seq % PROVINCES.length])
+                        .setCountry("Canada").setPostalCode("M5H 2N2"))
+                .setItemId(1 + seq % 50)
+                .setItemCost(10 + seq % 500)
+                .setShippingInfo(ShippingInfo.newBuilder()
+                        .setShippingType((seq & 1) == 0 ? ShippingType.REGULAR : ShippingType.EXPEDITED)
+                        .setShippingCost(5 + seq % 20)
+                        .setEstimatedDays(1 + seq % 7))
+                .setCreditCardInfo(CreditCardInfo.newBuilder()
+                        .setCardNumber(CARD_NUMBERS[seq % CARD_NUMBERS.length])
+                        .setNameOnCard("Warm Up")
+                        .setExpiryDate(seq % 10 == 0 ? "01/20" : "12/30")
+                        .setSecurityCode(seq % 3 == 0 ? "1234" : "123"))
+                .build();
+    }
+}
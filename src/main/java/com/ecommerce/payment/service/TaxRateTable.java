@@ -0,0 +1,187 @@
+package com.ecommerce.payment.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable sales tax rates (GST/HST/PST combined) per Canadian province or
+ * territory. Rates sit in an array indexed by the two-letter province code, so
+ * a lookup is a few char comparisons with no hashing or boxing. Provinces
+ * without a rate, and unrecognised ones, use the default rate.
+ */
+public final class TaxRateTable {
+
+    private static final String[] CODES = {
+            "AB", "BC", "MB", "NB", "NL", "NS", "NT", "NU", "ON", "PE", "QC", "QC", "SK", "YT"
+    };
+    private static final String[] NAMES = {
+            "Alberta", "British Columbia", "Manitoba", "New Brunswick", "Newfoundland and Labrador",
+            "Nova Scotia", "Northwest Territories", "Nunavut", "Ontario", "Prince Edward Island",
+            "Quebec", "Québec", "Saskatchewan", "Yukon"
+    };
+
+    private final Rate[] rates = new Rate[26 * 26];
+    private final Rate defaultRate;
+
+    private TaxRateTable(Rate defaultRate) {
+        this.defaultRate = defaultRate;
+    }
+
+    /**
+     * Builds a table from {@code "ON:0.13,QC:0.14975,..."}
+     *
+     * @throws IllegalArgumentException on an unknown province code or a malformed rate
+     */
+    public static TaxRateTable parse(String spec, double defaultRate) {
+        TaxRateTable table = new TaxRateTable(new Rate(defaultRate));
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Tax rate entry must be CODE:rate, got '" + entry.trim() + "'");
+            }
+            String code = entry.substring(0, colon).trim();
+            int index = codeIndex(code, 0, code.length());
+            if (index < 0 || !isKnownCode(code)) {
+                throw new IllegalArgumentException("Unknown province code '" + code + "'");
+            }
+            double rate = Double.parseDouble(entry.substring(colon + 1).trim());
+            if (rate < 0 || Double.isNaN(rate) || Double.isInfinite(rate)) {
+                throw new IllegalArgumentException("Invalid tax rate for " + code + ": " + rate);
+            }
+            table.rates[index] = new Rate(rate);
+        }
+        return table;
+    }
+
+    /**
+     * Rate for a province given as a two-letter code or a full name, case-insensitive
+     */
+    public Rate rateFor(String province) {
+        int index = provinceIndex(province);
+        Rate rate = index < 0 ? null : rates[index];
+        return rate != null ? rate : defaultRate;
+    }
+
+    public Rate getDefaultRate() {
+        return defaultRate;
+    }
+
+    /**
+     * Configured rates by province code, in code order
+     */
+    public Map<String, Double> asMap() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for (String code : CODES) {
+            Rate rate = rates[codeIndex(code, 0, 2)];
+            if (rate != null) {
+                map.putIfAbsent(code, rate.value());
+            }
+        }
+        return map;
+    }
+
+    static int provinceIndex(String province) {
+        if (province == null) {
+            return -1;
+        }
+        int start = 0;
+        int end = province.length();
+        while (start < end && province.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && province.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int length = end - start;
+        if (length == 2) {
+            return codeIndex(province, start, end);
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].length() == length && province.regionMatches(true, start, NAMES[i], 0, length)) {
+                return codeIndex(CODES[i], 0, 2);
+            }
+        }
+        return -1;
+    }
+
+    private static int codeIndex(String s, int start, int end) {
+        if (end - start != 2) {
+            return -1;
+        }
+        int first = Character.toUpperCase(s.charAt(start)) - 'A';
+        int second = Character.toUpperCase(s.charAt(start + 1)) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return -1;
+        }
+        return first * 26 + second;
+    }
+
+    private static boolean isKnownCode(String code) {
+        for (String known : CODES) {
+            if (known.equalsIgnoreCase(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One tax rate, decomposed once into an integer numerator over a power of
+     * ten so tax can be computed on long cents. Matches
+     * {@code BigDecimal.valueOf(rate)} math with HALF_UP rounding to the cent exactly.
+     */
+    public static final class Rate {
+
+        private static final long[] POW10 = {
+                1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+                1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+                10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L
+        };
+
+        private final double value;
+        private final BigDecimal decimal;
+        private final long numerator;
+        // value = numerator / denominator, denominator = 10^k; 0 when the rate needs BigDecimal
+        private final long denominator;
+
+        Rate(double value) {
+            this.value = value;
+            this.decimal = BigDecimal.valueOf(value);
+            BigDecimal normalized = decimal.scale() < 0 ? decimal.setScale(0) : decimal;
+            if (normalized.scale() < POW10.length && normalized.unscaledValue().bitLength() < 63) {
+                this.numerator = normalized.unscaledValue().longValue();
+                this.denominator = POW10[normalized.scale()];
+            } else {
+                this.numerator = 0;
+                this.denominator = 0;
+            }
+        }
+
+        public double value() {
+            return value;
+        }
+
+        /**
+         * Tax on an amount in cents, rounded HALF_UP to the cent
+         */
+        public long taxCents(long subtotalCents) {
+            if (denominator != 0) {
+                long abs = Math.abs(subtotalCents);
+                long high = Math.multiplyHigh(abs, numerator);
+                long product = abs * numerator;
+                if (high == 0 && product >= 0 && product <= Long.MAX_VALUE - denominator / 2) {
+                    // HALF_UP: round half away from zero
+                    long rounded = (product + denominator / 2) / denominator;
+                    return subtotalCents < 0 ? -rounded : rounded;
+                }
+            }
+            return BigDecimal.valueOf(subtotalCents, 2).multiply(decimal)
+                    .setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+    }
+}
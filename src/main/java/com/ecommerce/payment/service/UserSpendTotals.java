@@ -0,0 +1,101 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.config.DatabaseProduct;
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.entity.UserPaymentTotals;
+import com.ecommerce.payment.repository.UserPaymentTotalsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps user_payment_totals in step with payment status changes. Each change
+ * adds to the user's row with one upsert in the caller's transaction, so the
+ * totals commit or roll back together with the status they reflect and a
+ * spend summary is a primary-key lookup rather than a SUM over the history.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserSpendTotals {
+
+    /**
+     * Same as {@link UserPaymentTotalsRepository#addPostgres} as a standard SQL
+     * MERGE, for the other databases we run on (H2). Run through JDBC so that
+     * a duplicate key from a racing first insert can be retried without
+     * dooming the JPA transaction.
+     */
+    private static final String MERGE_STANDARD = "MERGE INTO user_payment_totals t " +
+            "USING (VALUES (CAST(? AS INTEGER), CAST(? AS DECIMAL(19, 2)), " +
+            "CAST(? AS BIGINT), CAST(? AS TIMESTAMP))) s (user_id, amount, cnt, paid_at) " +
+            "ON t.user_id = s.user_id " +
+            "WHEN MATCHED THEN UPDATE SET total_paid = t.total_paid + s.amount, " +
+            "payment_count = t.payment_count + s.cnt, " +
+            "last_payment_at = CASE WHEN s.paid_at IS NULL OR t.last_payment_at >= s.paid_at " +
+            "THEN t.last_payment_at ELSE s.paid_at END " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, total_paid, payment_count, last_payment_at) " +
+            "VALUES (s.user_id, s.amount, s.cnt, s.paid_at)";
+
+    private final UserPaymentTotalsRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseProduct databaseProduct;
+
+    /**
+     * Counts a payment that has just been COMPLETED
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCompleted(Payment payment, LocalDateTime completedAt) {
+        add(payment.getUserId(), amount(payment), 1, completedAt);
+    }
+
+    /**
+     * Counts payments completed together, with one upsert per user
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCompleted(Collection<Payment> payments, LocalDateTime completedAt) {
+        Map<Integer, BigDecimal> amounts = new HashMap<>();
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Payment payment : payments) {
+            amounts.merge(payment.getUserId(), amount(payment), BigDecimal::add);
+            counts.merge(payment.getUserId(), 1, Integer::sum);
+        }
+        amounts.forEach((userId, amount) -> add(userId, amount, counts.get(userId), completedAt));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<UserPaymentTotals> find(int userId) {
+        return repository.findById(userId);
+    }
+
+    private void add(int userId, BigDecimal amount, long count, LocalDateTime paidAt) {
+        if (databaseProduct.isPostgres()) {
+            repository.addPostgres(userId, amount, count, paidAt);
+            return;
+        }
+        Timestamp paidAtValue = Timestamp.valueOf(paidAt);
+        try {
+            jdbcTemplate.update(MERGE_STANDARD, userId, amount, count, paidAtValue);
+        } catch (DuplicateKeyException e) {
+            // MERGE is not atomic: a concurrent first payment of this user inserted the row
+            // and has committed by now, so the retry takes the update branch
+            jdbcTemplate.update(MERGE_STANDARD, userId, amount, count, paidAtValue);
+        }
+    }
+
+    private static BigDecimal amount(Payment payment) {
+        return BigDecimal.valueOf(payment.getTotalAmount()).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,57 @@
+package com.ecommerce.payment.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Hands out ids from blocks reserved up front (typically from a DB sequence).
+ * Within a block allocation is a single atomic increment; only the thread that
+ * finds the block exhausted takes a lock to reserve the next one.
+ */
+public final class BlockIdAllocator {
+
+    private final Supplier<long[]> blockSource;
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile Block current = new Block(new long[0]);
+
+    /**
+     * @param blockSource reserves the next block and returns its usable ids in
+     *                    ascending order; an empty block is skipped
+     */
+    public BlockIdAllocator(Supplier<long[]> blockSource) {
+        this.blockSource = blockSource;
+    }
+
+    public long next() {
+        while (true) {
+            Block block = current;
+            int index = block.cursor.getAndIncrement();
+            if (index < block.ids.length) {
+                return block.ids[index];
+            }
+            refill(block);
+        }
+    }
+
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            // Another thread may already have swapped in a fresh block
+            if (current == exhausted) {
+                current = new Block(blockSource.get());
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private static final class Block {
+        private final long[] ids;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        private Block(long[] ids) {
+            this.ids = ids;
+        }
+    }
+}
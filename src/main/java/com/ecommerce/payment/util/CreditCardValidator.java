@@ -1,105 +1,130 @@
 package com.ecommerce.payment.util;
 
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.regex.Pattern;
 
+/**
+ * Card checks run on every payment, so each one is a single pass over the
+ * chars with no regexes, substrings or date parsing. The current month is
+ * cached and refreshed by a scheduled tick.
+ */
 @Component
 public class CreditCardValidator {
 
-    private static final Pattern CARD_NUMBER_PATTERN = Pattern.compile("^[0-9]{13,19}$");
-    private static final Pattern SECURITY_CODE_PATTERN = Pattern.compile("^[0-9]{3,4}$");
-    private static final Pattern EXPIRY_DATE_PATTERN = Pattern.compile("^(0[1-9]|1[0-2])/([0-9]{2})$");
+    // year * 12 + (month - 1) of the current month
+    private volatile int currentMonth = monthIndex(YearMonth.now());
 
     /**
-     * Validates credit card number using Luhn algorithm
+     * Re-reads the clock so expiry checks roll over at the start of a month
+     */
+    @Scheduled(fixedDelayString = "${payment.card.clock-tick:PT1M}")
+    public void refreshCurrentMonth() {
+        currentMonth = monthIndex(YearMonth.now());
+    }
+
+    /**
+     * Validates credit card number using Luhn algorithm. Whitespace is ignored;
+     * 13 to 19 digits are required.
      */
     public boolean isValidCardNumber(String cardNumber) {
         if (cardNumber == null || cardNumber.isEmpty()) {
             return false;
         }
 
-        String cleanNumber = cardNumber.replaceAll("\\s+", "");
-
-        if (!CARD_NUMBER_PATTERN.matcher(cleanNumber).matches()) {
-            return false;
-        }
-
-        return luhnCheck(cleanNumber);
-    }
-
-    /**
-     * Luhn algorithm implementation for card validation
-     */
-    private boolean luhnCheck(String cardNumber) {
+        // Luhn from the right: every second digit is doubled
         int sum = 0;
-        boolean alternate = false;
-
+        int digits = 0;
         for (int i = cardNumber.length() - 1; i >= 0; i--) {
-            int digit = Character.getNumericValue(cardNumber.charAt(i));
-
-            if (alternate) {
+            char c = cardNumber.charAt(i);
+            if (isWhitespace(c)) {
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            int digit = c - '0';
+            if ((digits & 1) == 1) {
                 digit *= 2;
                 if (digit > 9) {
-                    digit = (digit % 10) + 1;
+                    digit -= 9;
                 }
             }
-
             sum += digit;
-            alternate = !alternate;
+            digits++;
         }
 
-        return (sum % 10 == 0);
+        return digits >= 13 && digits <= 19 && sum % 10 == 0;
     }
 
     /**
-     * Validates security code (CVV/CVC)
+     * Validates security code (CVV/CVC): 3 or 4 digits
      */
     public boolean isValidSecurityCode(String securityCode) {
-        if (securityCode == null || securityCode.isEmpty()) {
+        if (securityCode == null) {
             return false;
         }
-
-        return SECURITY_CODE_PATTERN.matcher(securityCode).matches();
+        int length = securityCode.length();
+        if (length < 3 || length > 4) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = securityCode.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Validates expiry date format and checks if card is not expired
+     * Validates expiry date format (MM/YY) and checks if card is not expired
      */
     public boolean isValidExpiryDate(String expiryDate) {
-        if (expiryDate == null || expiryDate.isEmpty()) {
+        if (expiryDate == null || expiryDate.length() != 5 || expiryDate.charAt(2) != '/') {
             return false;
         }
 
-        if (!EXPIRY_DATE_PATTERN.matcher(expiryDate).matches()) {
+        int month = twoDigits(expiryDate, 0);
+        int year = twoDigits(expiryDate, 3);
+        if (month < 1 || month > 12 || year < 0) {
             return false;
         }
 
-        try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/yy");
-            YearMonth cardExpiry = YearMonth.parse(expiryDate, formatter);
-            YearMonth currentMonth = YearMonth.now();
-
-            return !cardExpiry.isBefore(currentMonth);
-        } catch (DateTimeParseException e) {
-            return false;
-        }
+        // Two-digit years are 20YY, as with the "yy" date pattern
+        return (2000 + year) * 12 + (month - 1) >= currentMonth;
     }
 
     /**
      * Validates name on card
      */
     public boolean isValidNameOnCard(String name) {
-        if (name == null || name.trim().isEmpty()) {
+        if (name == null) {
             return false;
         }
 
+        // Same bounds as String.trim()
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
         // Name should be at least 2 characters and contain only letters and spaces
-        String trimmedName = name.trim();
-        return trimmedName.length() >= 2 && trimmedName.matches("^[a-zA-Z\\s]+$");
+        if (end - start < 2) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isWhitespace(c))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -107,40 +132,77 @@ public class CreditCardValidator {
      */
     public ValidationResult validateCreditCard(String cardNumber, String nameOnCard,
                                                String expiryDate, String securityCode) {
-        ValidationResult result = new ValidationResult();
+        // Only allocated once a check fails, so a valid card costs no garbage
+        StringBuilder errors = null;
 
         if (!isValidCardNumber(cardNumber)) {
-            result.addError("Invalid card number");
+            errors = appendError(errors, "Invalid card number");
         }
 
         if (!isValidNameOnCard(nameOnCard)) {
-            result.addError("Invalid name on card");
+            errors = appendError(errors, "Invalid name on card");
         }
 
         if (!isValidExpiryDate(expiryDate)) {
-            result.addError("Invalid or expired card");
+            errors = appendError(errors, "Invalid or expired card");
         }
 
         if (!isValidSecurityCode(securityCode)) {
-            result.addError("Invalid security code");
+            errors = appendError(errors, "Invalid security code");
+        }
+
+        return errors == null ? ValidationResult.valid() : ValidationResult.invalid(errors.toString());
+    }
+
+    private static StringBuilder appendError(StringBuilder errors, String error) {
+        if (errors == null) {
+            return new StringBuilder(error);
+        }
+        return errors.append("; ").append(error);
+    }
+
+    // The characters matched by the regex class \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static int twoDigits(String s, int offset) {
+        char tens = s.charAt(offset);
+        char ones = s.charAt(offset + 1);
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+            return -1;
         }
+        return (tens - '0') * 10 + (ones - '0');
+    }
 
-        return result;
+    private static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
     }
 
     /**
-     * Inner class to hold validation results
+     * Outcome of {@link #validateCreditCard}. Immutable, so the valid result
+     * is one shared instance.
      */
-    public static class ValidationResult {
-        private boolean valid = true;
-        private StringBuilder errors = new StringBuilder();
-
-        public void addError(String error) {
-            this.valid = false;
-            if (errors.length() > 0) {
-                errors.append("; ");
-            }
-            errors.append(error);
+    public static final class ValidationResult {
+        private static final ValidationResult VALID = new ValidationResult(true, "");
+
+        private final boolean valid;
+        private final String errors;
+
+        private ValidationResult(boolean valid, String errors) {
+            this.valid = valid;
+            this.errors = errors;
+        }
+
+        public static ValidationResult valid() {
+            return VALID;
+        }
+
+        /**
+         * @param errors the failed checks, separated by "; "
+         */
+        public static ValidationResult invalid(String errors) {
+            return new ValidationResult(false, errors);
         }
 
         public boolean isValid() {
@@ -148,7 +210,7 @@ public class CreditCardValidator {
         }
 
         public String getErrors() {
-            return errors.toString();
+            return errors;
         }
     }
 }
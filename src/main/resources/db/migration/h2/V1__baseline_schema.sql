@@ -0,0 +1,89 @@
+-- H2 counterpart of postgresql/V1__baseline_schema.sql; binary columns are
+-- varbinary without a length instead of bytea.
+
+CREATE TABLE IF NOT EXISTS payments (
+    id                      varchar(255) NOT NULL,
+    payment_id              integer      NOT NULL,
+    status                  varchar(255)
+        CHECK (status IN ('PENDING', 'PROCESSING', 'COMPLETED', 'FAILED', 'REFUNDED')),
+    user_id                 integer      NOT NULL,
+    item_id                 integer      NOT NULL,
+    item_cost               integer      NOT NULL,
+    shipping_cost           integer      NOT NULL,
+    shipping_type           varchar(255) NOT NULL CHECK (shipping_type IN ('REGULAR', 'EXPEDITED')),
+    estimated_shipping_days integer,
+    hst_amount              float(53)    NOT NULL,
+    total_amount            float(53)    NOT NULL,
+    payment_status          varchar(255) NOT NULL
+        CHECK (payment_status IN ('PENDING', 'PROCESSING', 'COMPLETED', 'FAILED', 'REFUNDED')),
+    transaction_reference   varchar(255),
+    first_name              varchar(255) NOT NULL,
+    last_name               varchar(255) NOT NULL,
+    street                  varchar(255) NOT NULL,
+    street_number           varchar(255) NOT NULL,
+    province                varchar(255) NOT NULL,
+    country                 varchar(255) NOT NULL,
+    postal_code             varchar(255) NOT NULL,
+    card_number_last_four   varchar(4),
+    name_on_card            varchar(255) NOT NULL,
+    card_type               varchar(255),
+    expiry_date             varchar(5),
+    created_at              timestamp(6),
+    updated_at              timestamp(6),
+    payment_error_message   varchar(255),
+    PRIMARY KEY (id),
+    UNIQUE (payment_id)
+);
+
+CREATE TABLE IF NOT EXISTS receipts (
+    receipt_id             integer      NOT NULL,
+    payment_id             integer      NOT NULL,
+    receipt_number         varchar(255) NOT NULL,
+    customer_name          varchar(255) NOT NULL,
+    customer_address       varchar(500) NOT NULL,
+    item_id                integer      NOT NULL,
+    item_cost              integer      NOT NULL,
+    shipping_cost          integer      NOT NULL,
+    hst_amount             float(53)    NOT NULL,
+    total_paid             float(53)    NOT NULL,
+    payment_method         varchar(255),
+    receipt_date           timestamp(6),
+    shipping_estimate_days integer,
+    receipt_snapshot       varbinary,
+    PRIMARY KEY (receipt_id),
+    UNIQUE (payment_id),
+    UNIQUE (receipt_number),
+    CONSTRAINT fk_receipts_payment FOREIGN KEY (payment_id) REFERENCES payments (payment_id)
+);
+-- Receipts created before receipt snapshots existed
+ALTER TABLE receipts ADD COLUMN IF NOT EXISTS receipt_snapshot varbinary;
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key varchar(160) NOT NULL,
+    response        varbinary        NOT NULL,
+    created_at      timestamp(6) NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+CREATE TABLE IF NOT EXISTS payment_outbox (
+    id         bigint       NOT NULL,
+    payment_id integer      NOT NULL,
+    payload    varbinary        NOT NULL,
+    created_at timestamp(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS user_payment_totals (
+    user_id         integer        NOT NULL,
+    total_paid      numeric(19, 2) NOT NULL,
+    payment_count   bigint         NOT NULL,
+    last_payment_at timestamp(6),
+    PRIMARY KEY (user_id)
+);
+
+-- payment_outbox ids (Hibernate pooled optimizer, allocationSize 100)
+CREATE SEQUENCE IF NOT EXISTS payment_outbox_seq START WITH 1 INCREMENT BY 100;
+-- Block-reserved by IdGenerator; the increment is the block size (payment.id.block-size)
+CREATE SEQUENCE IF NOT EXISTS payment_id_seq START WITH 100000000 INCREMENT BY 100;
+CREATE SEQUENCE IF NOT EXISTS receipt_id_seq START WITH 10000000 INCREMENT BY 100;
+CREATE SEQUENCE IF NOT EXISTS receipt_number_seq START WITH 1 INCREMENT BY 100;
@@ -0,0 +1,16 @@
+-- H2 counterpart of postgresql/V2__hot_query_indexes.sql. H2 has no partial
+-- indexes: the repair sweep index leads with payment_status instead, and the
+-- (user, item) uniqueness of active payments is left to DuplicatePaymentGuard.
+
+CREATE INDEX IF NOT EXISTS idx_payments_user_item_status
+    ON payments (user_id, item_id, payment_status, created_at DESC);
+
+CREATE INDEX IF NOT EXISTS idx_payments_user_created
+    ON payments (user_id, created_at DESC, payment_id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_payments_completed_updated
+    ON payments (payment_status, updated_at);
+
+CREATE INDEX IF NOT EXISTS idx_payments_created_at ON payments (created_at);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created_at ON idempotency_keys (created_at);
@@ -0,0 +1,10 @@
+-- H2 counterpart of postgresql/V3__backfill_user_payment_totals.sql, without
+-- the table lock: H2 databases are local to one instance.
+
+DELETE FROM user_payment_totals;
+
+INSERT INTO user_payment_totals (user_id, total_paid, payment_count, last_payment_at)
+SELECT user_id, SUM(CAST(total_amount AS DECIMAL(19, 2))), COUNT(*), MAX(updated_at)
+FROM payments
+WHERE payment_status = 'COMPLETED'
+GROUP BY user_id;
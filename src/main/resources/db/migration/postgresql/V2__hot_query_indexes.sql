@@ -0,0 +1,36 @@
+-- One index per hot repository query. Lookups by payments.payment_id,
+-- receipts.payment_id (Receipt.payment joins and findByPaymentId) and
+-- receipts.receipt_number use the unique constraints from V1.
+
+-- existsByUserIdAndItemIdAndPaymentStatusIn, its batch variant
+-- findByUserIdInAndItemIdInAndPaymentStatusIn, and
+-- findTopByUserIdAndItemIdAndPaymentStatusOrderByCreatedAtDesc
+CREATE INDEX IF NOT EXISTS idx_payments_user_item_status
+    ON payments (user_id, item_id, payment_status, created_at DESC);
+
+-- findHistoryByUserId, findHistoryByUserIdBefore (keyset), streamHistoryByUserId and countByUserId
+CREATE INDEX IF NOT EXISTS idx_payments_user_created
+    ON payments (user_id, created_at DESC, payment_id DESC);
+
+-- findCompletedWithoutReceipt (async receipt repair sweep)
+CREATE INDEX IF NOT EXISTS idx_payments_completed_updated
+    ON payments (updated_at) WHERE payment_status = 'COMPLETED';
+
+-- revenueByDay / revenueByHour
+CREATE INDEX IF NOT EXISTS idx_payments_created_at ON payments (created_at);
+
+-- IdempotencyRecordRepository.deleteCreatedBefore
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created_at ON idempotency_keys (created_at);
+
+-- At most one PROCESSING or COMPLETED payment per (user, item), even across
+-- nodes. Existing duplicates make this fail; the in-process
+-- DuplicatePaymentGuard still applies then, so the migration carries on.
+DO $$
+BEGIN
+    CREATE UNIQUE INDEX IF NOT EXISTS ux_payments_active_user_item
+        ON payments (user_id, item_id)
+        WHERE payment_status IN ('PROCESSING', 'COMPLETED');
+EXCEPTION
+    WHEN unique_violation THEN
+        RAISE WARNING 'ux_payments_active_user_item not created: duplicate active (user, item) payments exist';
+END $$;
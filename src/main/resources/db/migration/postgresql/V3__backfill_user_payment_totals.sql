@@ -0,0 +1,14 @@
+-- Rebuilds user_payment_totals from the completed payments it was introduced
+-- after. The table lock blocks increments from instances already running the
+-- new code until this migration commits, so each completed payment is counted
+-- exactly once: either here or by the increment that waited on the lock.
+
+LOCK TABLE user_payment_totals IN SHARE ROW EXCLUSIVE MODE;
+
+DELETE FROM user_payment_totals;
+
+INSERT INTO user_payment_totals (user_id, total_paid, payment_count, last_payment_at)
+SELECT user_id, SUM(CAST(total_amount AS numeric(19, 2))), COUNT(*), MAX(updated_at)
+FROM payments
+WHERE payment_status = 'COMPLETED'
+GROUP BY user_id;
@@ -0,0 +1,75 @@
+-- Converts payments and receipts into tables range-partitioned by calendar
+-- month of created_at / receipt_date (PostgreSQL 12+). Run once, after the
+-- Flyway migrations (db/migration/postgresql) have been applied and with no
+-- service instance running, as a single transaction:
+--
+--   psql -1 -v ON_ERROR_STOP=1 -f postgresql-partition-by-month.sql
+--
+-- Partitions are named payments_pYYYYMM / receipts_pYYYYMM; from then on
+-- PartitionManager creates upcoming months and archives old ones.
+--
+-- A unique constraint on a partitioned table must include the partition key,
+-- so payment_id, receipt_id, receipt_number and receipts.payment_id become
+-- unique per month only (ids come from sequences, so they stay unique in
+-- practice), and the receipts -> payments foreign key is dropped. The
+-- ux_payments_active_user_item index cannot be recreated either; instead the
+-- service takes a per-(user, item) advisory lock around its duplicate check.
+
+-- The partition key must be set on every row
+UPDATE payments SET created_at = COALESCE(updated_at, now()) WHERE created_at IS NULL;
+UPDATE receipts r SET receipt_date = p.created_at
+FROM payments p WHERE p.payment_id = r.payment_id AND r.receipt_date IS NULL;
+
+ALTER TABLE payments RENAME TO payments_unpartitioned;
+ALTER TABLE receipts RENAME TO receipts_unpartitioned;
+-- Index names are schema-wide, so the old tables' indexes make way for the new ones
+ALTER INDEX IF EXISTS idx_payments_user_item_status RENAME TO idx_payments_unpartitioned_user_item_status;
+ALTER INDEX IF EXISTS idx_payments_user_created RENAME TO idx_payments_unpartitioned_user_created;
+ALTER INDEX IF EXISTS idx_payments_completed_updated RENAME TO idx_payments_unpartitioned_completed_updated;
+ALTER INDEX IF EXISTS idx_payments_created_at RENAME TO idx_payments_unpartitioned_created_at;
+
+CREATE TABLE payments (LIKE payments_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (created_at);
+ALTER TABLE payments ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE payments ADD PRIMARY KEY (id, created_at);
+CREATE INDEX idx_payments_payment_id ON payments (payment_id);
+CREATE INDEX idx_payments_user_item_status ON payments (user_id, item_id, payment_status, created_at DESC);
+CREATE INDEX idx_payments_user_created ON payments (user_id, created_at DESC, payment_id DESC);
+CREATE INDEX idx_payments_completed_updated ON payments (updated_at) WHERE payment_status = 'COMPLETED';
+CREATE INDEX idx_payments_created_at ON payments (created_at);
+
+CREATE TABLE receipts (LIKE receipts_unpartitioned INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (receipt_date);
+ALTER TABLE receipts ALTER COLUMN receipt_date SET NOT NULL;
+ALTER TABLE receipts ADD PRIMARY KEY (receipt_id, receipt_date);
+CREATE INDEX idx_receipts_payment_id ON receipts (payment_id);
+CREATE INDEX idx_receipts_receipt_number ON receipts (receipt_number);
+
+-- One partition per month from the oldest row up to three months ahead
+DO $$
+DECLARE
+    month_start timestamp;
+    last_month timestamp := date_trunc('month', now()) + interval '3 months';
+BEGIN
+    month_start := date_trunc('month', LEAST(
+            (SELECT min(created_at) FROM payments_unpartitioned),
+            (SELECT min(receipt_date) FROM receipts_unpartitioned),
+            now()));
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE payments_p%s PARTITION OF payments FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month_start, 'YYYYMM'), month_start, month_start + interval '1 month');
+        EXECUTE format('CREATE TABLE receipts_p%s PARTITION OF receipts FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month_start, 'YYYYMM'), month_start, month_start + interval '1 month');
+        month_start := month_start + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO payments SELECT * FROM payments_unpartitioned;
+INSERT INTO receipts SELECT * FROM receipts_unpartitioned;
+
+ANALYZE payments;
+ANALYZE receipts;
+
+-- Drop once the copy has been checked:
+-- DROP TABLE receipts_unpartitioned;
+-- DROP TABLE payments_unpartitioned;
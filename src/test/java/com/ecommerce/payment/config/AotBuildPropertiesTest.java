@@ -0,0 +1,48 @@
+package com.ecommerce.payment.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AotBuildPropertiesTest {
+
+    @Test
+    void unsetPropertiesAreCapturedWithTheDefaultsTheirConditionsAssume() {
+        Properties captured = AotBuildProperties.capture(new MockEnvironment()
+                .withProperty("payment.executor.mode", "VIRTUAL"));
+
+        assertThat(captured.getProperty("payment.executor.mode")).isEqualTo("VIRTUAL");
+        assertThat(captured.getProperty("payment.gateway.type")).isEqualTo("stub");
+        assertThat(captured.getProperty("payment.datasource.replicas.enabled")).isEqualTo("false");
+    }
+
+    @Test
+    void onlyValuesSetDifferentlyFromTheBuildAreReported() {
+        Properties built = AotBuildProperties.capture(new MockEnvironment()
+                .withProperty("payment.executor.mode", "VIRTUAL"));
+
+        MockEnvironment runtime = new MockEnvironment()
+                .withProperty("payment.events.sink", "file")
+                .withProperty("payment.executor.mode", "virtual");
+        runtime.getPropertySources().addLast(new PropertiesPropertySource(AotBuildProperties.PROPERTY_SOURCE, built));
+
+        assertThat(AotBuildProperties.differences(built, runtime))
+                .containsExactly("payment.events.sink=file (image built with memory)");
+    }
+
+    @Test
+    void unsetPropertiesFallBackToTheBuiltValues() {
+        Properties built = AotBuildProperties.capture(new MockEnvironment()
+                .withProperty("payment.executor.mode", "VIRTUAL"));
+
+        MockEnvironment runtime = new MockEnvironment();
+        runtime.getPropertySources().addLast(new PropertiesPropertySource(AotBuildProperties.PROPERTY_SOURCE, built));
+
+        assertThat(AotBuildProperties.differences(built, runtime)).isEmpty();
+        assertThat(runtime.getProperty("payment.executor.mode")).isEqualTo("VIRTUAL");
+    }
+}
@@ -0,0 +1,131 @@
+package com.ecommerce.payment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routes between two H2 instances, a primary and a replica, each of which
+ * answers {@code SELECT name FROM instance} with its own role. The replica's
+ * reported lag comes from its lag_state table.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final String LAG_QUERY = "SELECT COALESCE(MAX(seconds), 0) FROM lag_state";
+
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    private void start(Duration maxLag, Duration checkInterval) {
+        primary = instance("primary");
+        replica = instance("replica-0");
+        new JdbcTemplate(replica).execute("CREATE TABLE lag_state (seconds DOUBLE)");
+        routing = new ReplicaRoutingDataSource(primary, List.of(replica), LAG_QUERY, maxLag, checkInterval,
+                new SimpleMeterRegistry());
+        routing.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbc = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private static HikariDataSource instance(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+        JdbcTemplate jdbc = new JdbcTemplate(pool);
+        jdbc.execute("CREATE TABLE instance (name VARCHAR(20))");
+        jdbc.update("INSERT INTO instance VALUES (?)", name);
+        return pool;
+    }
+
+    @AfterEach
+    void stop() {
+        routing.destroy();
+        primary.close();
+    }
+
+    private String readOnlyServedBy() {
+        return readOnly.execute(status -> jdbc.queryForObject("SELECT name FROM instance", String.class));
+    }
+
+    private void reportLag(double seconds) {
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.update("DELETE FROM lag_state");
+        replicaJdbc.update("INSERT INTO lag_state VALUES (?)", seconds);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToAHealthyReplicaAndWritesToThePrimary() {
+        start(Duration.ofSeconds(5), Duration.ofHours(1));
+
+        assertThat(readOnlyServedBy()).isEqualTo("replica-0");
+        String writer = readWrite.execute(status -> jdbc.queryForObject("SELECT name FROM instance", String.class));
+        assertThat(writer).isEqualTo("primary");
+        try (ReadRouting.Scope ignored = ReadRouting.primaryIf(true)) {
+            assertThat(readOnlyServedBy()).isEqualTo("primary");
+        }
+    }
+
+    @Test
+    void replicaThatLagsOrStopsAnsweringIsSkipped() {
+        start(Duration.ofSeconds(5), Duration.ofHours(1));
+
+        reportLag(30);
+        routing.checkReplicas();
+        assertThat(readOnlyServedBy()).isEqualTo("primary");
+
+        reportLag(0);
+        routing.checkReplicas();
+        assertThat(readOnlyServedBy()).isEqualTo("replica-0");
+
+        new JdbcTemplate(replica).execute("DROP TABLE lag_state");
+        routing.checkReplicas();
+        assertThat(readOnlyServedBy()).isEqualTo("primary");
+    }
+
+    @Test
+    void replicaIsSkippedOnceItsLastAnsweredCheckIsOlderThanMaxLag() throws InterruptedException {
+        // Only the check at startup runs, as if the checker had stalled
+        start(Duration.ofMillis(200), Duration.ofHours(1));
+        assertThat(readOnlyServedBy()).isEqualTo("replica-0");
+
+        Thread.sleep(300);
+        assertThat(readOnlyServedBy()).isEqualTo("primary");
+
+        routing.checkReplicas();
+        assertThat(readOnlyServedBy()).isEqualTo("replica-0");
+    }
+
+    @Test
+    void lagIsRecheckedOnItsOwnThread() throws InterruptedException {
+        start(Duration.ofSeconds(5), Duration.ofMillis(50));
+        assertThat(readOnlyServedBy()).isEqualTo("replica-0");
+
+        reportLag(30);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!readOnlyServedBy().equals("primary") && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(readOnlyServedBy()).isEqualTo("primary");
+    }
+}
@@ -0,0 +1,66 @@
+package com.ecommerce.payment.grpc;
+
+import com.ecommerce.payment.service.PaymentRequests;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ProcessPaymentStream fails a stream as soon as it goes over
+ * payment.batch.max-size, without waiting for the client to half-close.
+ */
+@SpringBootTest(properties = "payment.batch.max-size=2")
+class PaymentStreamLimitTest {
+
+    @Autowired
+    private PaymentGrpcServiceImpl grpcService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamOverTheLimitFailsOnTheFirstExtraPayment() {
+        StreamObserver<PaymentBatchResponse> observer = mock(StreamObserver.class);
+        StreamObserver<PaymentRequest> stream = grpcService.processPaymentStream(observer);
+
+        stream.onNext(PaymentRequests.request(101, 1010));
+        stream.onNext(PaymentRequests.request(101, 1011));
+        verify(observer, never()).onError(any());
+
+        stream.onNext(PaymentRequests.request(101, 1012));
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(observer).onError(error.capture());
+        assertThat(Status.fromThrowable(error.getValue()).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+
+        stream.onNext(PaymentRequests.request(101, 1013));
+        stream.onCompleted();
+        verify(observer, times(1)).onError(any());
+        verify(observer, never()).onNext(any());
+        verify(observer, never()).onCompleted();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamAtTheLimitIsProcessed() {
+        StreamObserver<PaymentBatchResponse> observer = mock(StreamObserver.class);
+        StreamObserver<PaymentRequest> stream = grpcService.processPaymentStream(observer);
+
+        stream.onNext(PaymentRequests.request(102, 1020));
+        stream.onNext(PaymentRequests.request(102, 1021));
+        stream.onCompleted();
+
+        ArgumentCaptor<PaymentBatchResponse> response = ArgumentCaptor.forClass(PaymentBatchResponse.class);
+        verify(observer, timeout(5000)).onNext(response.capture());
+        verify(observer, timeout(5000)).onCompleted();
+        assertThat(response.getValue().getResultsCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,21 @@
+package com.ecommerce.payment.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records every SQL statement Hibernate prepares, so tests can look at the
+ * SQL the repositories really generate
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+}
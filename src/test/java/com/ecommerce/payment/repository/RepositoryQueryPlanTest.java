@@ -0,0 +1,159 @@
+package com.ecommerce.payment.repository;
+
+import com.ecommerce.payment.config.DatabaseProduct;
+import com.ecommerce.payment.entity.Payment;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EXPLAINs the SQL Hibernate generates for every repository method on the
+ * payment path, against the schema built by the Flyway migrations, and fails
+ * when one of them would scan a whole table. On PostgreSQL sequential scans
+ * are disabled first, so the planner only picks one when no index can serve
+ * the query, however small the tables are.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.ecommerce.payment.repository.RecordingStatementInspector")
+class RepositoryQueryPlanTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final Set<Payment.PaymentStatus> ACTIVE =
+            Set.of(Payment.PaymentStatus.PROCESSING, Payment.PaymentStatus.COMPLETED);
+
+    @Autowired
+    private PaymentRepository payments;
+    @Autowired
+    private ReceiptRepository receipts;
+    @Autowired
+    private OutboxEventRepository outbox;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecords;
+    @Autowired
+    private UserPaymentTotalsRepository userTotals;
+    @Autowired
+    private DatabaseProduct databaseProduct;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void hotQueriesAreServedByIndexes() {
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("PaymentRepository.existsByUserIdAndItemIdAndPaymentStatusIn",
+                () -> payments.existsByUserIdAndItemIdAndPaymentStatusIn(1, 1, ACTIVE));
+        queries.put("PaymentRepository.findTopByUserIdAndItemIdAndPaymentStatusOrderByCreatedAtDesc",
+                () -> payments.findTopByUserIdAndItemIdAndPaymentStatusOrderByCreatedAtDesc(
+                        1, 1, Payment.PaymentStatus.COMPLETED));
+        queries.put("PaymentRepository.findByUserIdInAndItemIdInAndPaymentStatusIn",
+                () -> payments.findByUserIdInAndItemIdInAndPaymentStatusIn(List.of(1, 2), List.of(1, 2), ACTIVE));
+        queries.put("PaymentRepository.finalizeProcessing",
+                () -> payments.finalizeProcessing("x", Payment.PaymentStatus.COMPLETED, "ref", null, T));
+        queries.put("PaymentRepository.findByPaymentId", () -> payments.findByPaymentId(1));
+        queries.put("PaymentRepository.findByPaymentOrReceiptId",
+                () -> payments.findByPaymentOrReceiptId(1, Limit.of(1)));
+        queries.put("PaymentRepository.findByPaymentOrReceiptIdSince",
+                () -> payments.findByPaymentOrReceiptIdSince(1, T, Limit.of(1)));
+        queries.put("PaymentRepository.findCompletedWithoutReceipt",
+                () -> payments.findCompletedWithoutReceipt(T, T.plusHours(1), Limit.of(500)));
+        queries.put("PaymentRepository.findPaymentIdsBetween", () -> payments.findPaymentIdsBetween(1, 100));
+        queries.put("PaymentRepository.findHistoryByUserId",
+                () -> payments.findHistoryByUserId(1, PageRequest.of(0, 20)));
+        queries.put("PaymentRepository.findHistoryByUserIdBefore",
+                () -> payments.findHistoryByUserIdBefore(1, T, 1, Limit.of(20)));
+        queries.put("PaymentRepository.streamHistoryByUserId", () -> {
+            try (Stream<PaymentWithReceipt> stream = payments.streamHistoryByUserId(1)) {
+                stream.count();
+            }
+        });
+        queries.put("PaymentRepository.countByUserId", () -> payments.countByUserId(1));
+        queries.put("PaymentRepository.revenueByDay", () -> payments.revenueByDay(T, T.plusDays(1)));
+        queries.put("PaymentRepository.revenueByHour", () -> payments.revenueByHour(T, T.plusDays(1)));
+        queries.put("ReceiptRepository.findByReceiptId", () -> receipts.findByReceiptId(1));
+        queries.put("ReceiptRepository.findByPaymentId", () -> receipts.findByPaymentId(1));
+        queries.put("ReceiptRepository.findByPaymentIdIn", () -> receipts.findByPaymentIdIn(List.of(1, 2)));
+        queries.put("OutboxEventRepository.lockNextBatch", () -> outbox.lockNextBatch(Limit.of(100)));
+        queries.put("OutboxEventRepository.deleteAllByIdInBatch", () -> outbox.deleteAllByIdInBatch(List.of(1L, 2L)));
+        queries.put("IdempotencyRecordRepository.findById", () -> idempotencyRecords.findById("key"));
+        queries.put("IdempotencyRecordRepository.deleteCreatedBefore", () -> idempotencyRecords.deleteCreatedBefore(T));
+        queries.put("UserPaymentTotalsRepository.findById", () -> userTotals.findById(1));
+
+        boolean postgres = databaseProduct.isPostgres();
+        List<String> scans = new ArrayList<>();
+        queries.forEach((method, query) -> transactionTemplate.executeWithoutResult(status -> {
+            RecordingStatementInspector.STATEMENTS.clear();
+            query.run();
+            List<String> statements = List.copyOf(RecordingStatementInspector.STATEMENTS);
+            assertThat(statements).as("SQL issued by %s", method).isNotEmpty();
+            if (postgres) {
+                jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            }
+            for (String sql : statements) {
+                String plan = explain(sql);
+                // PostgreSQL prints "Seq Scan on t", H2 annotates the table with "/* ....tableScan */"
+                if (postgres ? plan.contains("Seq Scan") : plan.contains(".tableScan")) {
+                    scans.add(method + ":\n" + sql + "\n" + plan);
+                }
+            }
+            status.setRollbackOnly();
+        }));
+
+        assertThat(scans).as("hot queries without a usable index").isEmpty();
+    }
+
+    /**
+     * Plan of a statement as Hibernate prepared it, with a placeholder value of
+     * the right type bound to each parameter
+     */
+    private String explain(String sql) {
+        return jdbcTemplate.execute("EXPLAIN " + sql, (PreparedStatementCallback<String>) statement -> {
+            bindPlaceholders(statement);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        });
+    }
+
+    private static void bindPlaceholders(PreparedStatement statement) throws SQLException {
+        ParameterMetaData parameters = statement.getParameterMetaData();
+        for (int i = 1; i <= parameters.getParameterCount(); i++) {
+            switch (parameters.getParameterType(i)) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+                     Types.DECIMAL, Types.NUMERIC, Types.REAL, Types.FLOAT, Types.DOUBLE ->
+                        statement.setInt(i, 1);
+                case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE, Types.DATE ->
+                        statement.setTimestamp(i, Timestamp.valueOf(T));
+                case Types.BOOLEAN, Types.BIT -> statement.setBoolean(i, false);
+                default -> statement.setString(i, parameters.getParameterTypeName(i)
+                        .toLowerCase(Locale.ROOT).contains("char") ? "COMPLETED" : "1");
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.grpc.PaymentRequest;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Requests for the same user and item that overlap while the gateway stub
+ * is still answering the first one
+ */
+@SpringBootTest(properties = {
+        "payment.gateway.stub.latency-min-ms=500",
+        "payment.gateway.stub.latency-max-ms=500"
+})
+class DuplicatePaymentGuardTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Test
+    void retryWithTheSameIdempotencyKeyGetsTheInFlightResponse() {
+        PaymentRequest request = PaymentRequests.request(61, 610).toBuilder().setIdempotencyKey("order-61").build();
+
+        CompletableFuture<PaymentResponse> original = paymentService.processPayment(request);
+        CompletableFuture<PaymentResponse> retry = paymentService.processPayment(request);
+        assertThat(original).isNotDone();
+
+        assertThat(original.join().getSuccess()).isTrue();
+        assertThat(retry.join()).isEqualTo(original.join());
+        // Once finalized, the same retry is a replay with the same answer
+        assertThat(paymentService.processPayment(request).join()).isEqualTo(original.join());
+    }
+
+    @Test
+    void overlappingRequestUnderAnotherKeyIsADuplicate() {
+        PaymentRequest request = PaymentRequests.request(62, 620);
+
+        CompletableFuture<PaymentResponse> first =
+                paymentService.processPayment(request.toBuilder().setIdempotencyKey("order-62").build());
+        CompletableFuture<PaymentResponse> other =
+                paymentService.processPayment(request.toBuilder().setIdempotencyKey("order-62-b").build());
+        CompletableFuture<PaymentResponse> keyless = paymentService.processPayment(request);
+
+        assertThat(first.join().getSuccess()).isTrue();
+        for (PaymentResponse duplicate : new PaymentResponse[] {other.join(), keyless.join()}) {
+            assertThat(duplicate.getSuccess()).isFalse();
+            assertThat(duplicate.getMessage()).contains("already purchased");
+            assertThat(duplicate.getPaymentId()).isEqualTo(first.join().getPaymentId());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.payment.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class IdGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 20_000;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Test
+    void concurrentAllocationIsUniqueAcrossAllSequences() throws Exception {
+        Set<Integer> paymentIds = ConcurrentHashMap.newKeySet();
+        Set<Integer> receiptIds = ConcurrentHashMap.newKeySet();
+        Set<String> receiptNumbers = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(executor.submit(() -> {
+                    int previous = 0;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        int paymentId = idGenerator.nextPaymentId();
+                        assertThat(paymentIds.add(paymentId)).as("payment id %d issued twice", paymentId).isTrue();
+                        assertThat(paymentId).isGreaterThan(previous);
+                        previous = paymentId;
+                        assertThat(receiptIds.add(idGenerator.nextReceiptId())).isTrue();
+                        assertThat(receiptNumbers.add(idGenerator.nextReceiptNumber())).isTrue();
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int total = THREADS * IDS_PER_THREAD;
+        assertThat(paymentIds).hasSize(total).allMatch(id -> id >= 100_000_000);
+        assertThat(receiptIds).hasSize(total).allMatch(id -> id >= 10_000_000);
+        assertThat(receiptNumbers).hasSize(total).allMatch(number -> number.matches("RCP-\\d{10}"));
+    }
+}
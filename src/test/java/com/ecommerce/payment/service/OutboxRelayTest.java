@@ -0,0 +1,120 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.OutboxEvent;
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.events.InMemoryPaymentEventSink;
+import com.ecommerce.payment.gateway.AuthorizationResult;
+import com.ecommerce.payment.gateway.PaymentGateway;
+import com.ecommerce.payment.grpc.PaymentEvent;
+import com.ecommerce.payment.grpc.PaymentEventType;
+import com.ecommerce.payment.repository.OutboxEventRepository;
+import com.ecommerce.payment.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Final statuses queued by {@link PaymentOutbox} reach the sink through
+ * {@link OutboxRelay} and leave the outbox only once the sink accepted them.
+ * The scheduled relay is slowed down so the tests drain it themselves.
+ */
+@SpringBootTest(properties = "payment.outbox.poll-interval=PT1H")
+class OutboxRelayTest {
+
+    // Approves even item ids and declines odd ones
+    @MockBean
+    private PaymentGateway gateway;
+
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private OutboxRelay relay;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private InMemoryPaymentEventSink sink;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void emptyOutboxAndSink() {
+        when(gateway.authorize(any())).thenAnswer(invocation -> {
+            Payment payment = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(payment.getItemId() % 2 == 0
+                    ? AuthorizationResult.approved("TXN-" + payment.getPaymentId())
+                    : AuthorizationResult.declined("Card declined"));
+        });
+        relay.drain();
+        sink.clear();
+    }
+
+    @Test
+    void everyFinalStatusIsPublishedOnceAndRemoved() {
+        assertThat(paymentService.processPayment(PaymentRequests.request(111, 1110)).join().getSuccess()).isTrue();
+        assertThat(paymentService.processPayment(PaymentRequests.request(111, 1111)).join().getSuccess()).isFalse();
+        int completed = paymentId(111, 1110);
+        int failed = paymentId(111, 1111);
+        List<OutboxEvent> queued = outboxRepository.findAll();
+        assertThat(queued).extracting(OutboxEvent::getPaymentId).containsExactlyInAnyOrder(completed, failed);
+
+        relay.drain();
+
+        assertThat(sink.events())
+                .extracting(PaymentEvent::getEventId, PaymentEvent::getPaymentId, PaymentEvent::getType)
+                .containsExactlyInAnyOrder(
+                        tuple(eventId(queued, completed), completed, PaymentEventType.PAYMENT_COMPLETED),
+                        tuple(eventId(queued, failed), failed, PaymentEventType.PAYMENT_FAILED));
+        assertThat(sink.events())
+                .filteredOn(event -> event.getPaymentId() == completed)
+                .singleElement()
+                .extracting(PaymentEvent::getTransactionReference)
+                .isEqualTo("TXN-" + completed);
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void failedPublishLeavesTheBatchForTheNextPoll() {
+        paymentService.processPayment(PaymentRequests.request(112, 1120)).join();
+        int paymentId = paymentId(112, 1120);
+        List<OutboxEvent> queued = outboxRepository.findAll();
+
+        OutboxRelay brokerDown = new OutboxRelay(outboxRepository, events -> {
+            throw new IllegalStateException("broker unavailable");
+        }, transactionTemplate, new SimpleMeterRegistry(), 500, 50);
+        brokerDown.drain();
+
+        assertThat(outboxRepository.findAll()).extracting(OutboxEvent::getId)
+                .containsExactlyElementsOf(queued.stream().map(OutboxEvent::getId).toList());
+        assertThat(sink.events()).isEmpty();
+
+        relay.drain();
+
+        assertThat(sink.events()).extracting(PaymentEvent::getEventId, PaymentEvent::getPaymentId)
+                .containsExactly(tuple(eventId(queued, paymentId), paymentId));
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    private int paymentId(int userId, int itemId) {
+        return paymentRepository.findAll().stream()
+                .filter(payment -> payment.getUserId() == userId && payment.getItemId() == itemId)
+                .findFirst().orElseThrow().getPaymentId();
+    }
+
+    private static long eventId(List<OutboxEvent> queued, int paymentId) {
+        return queued.stream().filter(row -> row.getPaymentId() == paymentId).findFirst().orElseThrow().getId();
+    }
+}
@@ -0,0 +1,78 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.grpc.PaymentResponse;
+import com.ecommerce.payment.repository.PaymentRepository;
+import com.ecommerce.payment.repository.PaymentWithReceipt;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class PartitionManagerTest {
+
+    @Autowired
+    private PartitionManager partitionManager;
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void archiveWindowMayWrapPastMidnight() {
+        PartitionManager.ArchiveWindow night = PartitionManager.ArchiveWindow.parse("02:00-05:00");
+        assertThat(night.contains(LocalTime.of(2, 0))).isTrue();
+        assertThat(night.contains(LocalTime.of(4, 59))).isTrue();
+        assertThat(night.contains(LocalTime.of(5, 0))).isFalse();
+        assertThat(night.contains(LocalTime.of(12, 0))).isFalse();
+
+        PartitionManager.ArchiveWindow wrapping = PartitionManager.ArchiveWindow.parse("23:00-01:30");
+        assertThat(wrapping.contains(LocalTime.of(23, 30))).isTrue();
+        assertThat(wrapping.contains(LocalTime.of(0, 45))).isTrue();
+        assertThat(wrapping.contains(LocalTime.of(1, 30))).isFalse();
+        assertThat(wrapping.contains(LocalTime.of(22, 59))).isFalse();
+
+        assertThatThrownBy(() -> PartitionManager.ArchiveWindow.parse("02:00"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void unpartitionedTablesAreLeftAlone() {
+        // H2 has no partitioned payments table, so lookups are never bounded
+        assertThat(partitionManager.lowerBoundFor(100_000_000)).isEmpty();
+    }
+
+    @Test
+    void lookupsBoundedByCreationTimeFindPaymentsAndReceiptsOnlyFromThatTimeOn() {
+        PaymentResponse response = paymentService.processPayment(PaymentRequests.request(3, 30)).join();
+        assertThat(response.getSuccess()).isTrue();
+        int paymentId = response.getPaymentId();
+        int receiptId = response.getReceiptInfo().getReceiptId();
+        LocalDateTime before = LocalDateTime.now().minusDays(1);
+        LocalDateTime after = LocalDateTime.now().plusDays(1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int id : new int[]{paymentId, receiptId}) {
+                List<PaymentWithReceipt> unbounded = paymentRepository.findByPaymentOrReceiptId(id, Limit.of(1));
+                List<PaymentWithReceipt> since = paymentRepository.findByPaymentOrReceiptIdSince(id, before, Limit.of(1));
+                assertThat(unbounded).singleElement()
+                        .satisfies(found -> assertThat(found.payment().getPaymentId()).isEqualTo(paymentId))
+                        .satisfies(found -> assertThat(found.receipt().getReceiptId()).isEqualTo(receiptId));
+                assertThat(since).singleElement()
+                        .satisfies(found -> assertThat(found.payment().getPaymentId()).isEqualTo(paymentId));
+                assertThat(paymentRepository.findByPaymentOrReceiptIdSince(id, after, Limit.of(1))).isEmpty();
+            }
+            assertThat(paymentRepository.findByPaymentOrReceiptId(42, Limit.of(1))).isEmpty();
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.grpc.PaymentGrpcServiceImpl;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import com.ecommerce.payment.repository.PaymentRepository;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * A payment whose finalization cannot be handed to the full paymentExecutor
+ * is released and reported as UNAVAILABLE, instead of finalizing on the
+ * gateway callback thread.
+ */
+@SpringBootTest(properties = {
+        "payment.executor.core-pool-size=1",
+        "payment.executor.max-pool-size=1",
+        "payment.executor.queue-capacity=0"
+})
+class PaymentExecutorSaturationTest {
+
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private PaymentGrpcServiceImpl grpcService;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    @Qualifier("paymentExecutor")
+    private AsyncTaskExecutor paymentExecutor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void occupyTheOnlyThread() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        paymentExecutor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @AfterEach
+    void freeTheThread() {
+        release.countDown();
+    }
+
+    @Test
+    void rejectedFinalizationReleasesTheReservation() {
+        CompletableFuture<PaymentResponse> result = paymentService.processPayment(PaymentRequests.request(91, 910));
+
+        Throwable failure = result.handle((response, e) -> e).join();
+        assertThat(PaymentService.isRejected(failure)).isTrue();
+        assertThat(paymentRepository.findAll())
+                .filteredOn(p -> p.getUserId() == 91)
+                .singleElement()
+                .extracting(Payment::getPaymentStatus)
+                .isEqualTo(Payment.PaymentStatus.FAILED);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void grpcCallFailsWithUnavailable() {
+        StreamObserver<PaymentResponse> observer = mock(StreamObserver.class);
+
+        grpcService.processPayment(PaymentRequests.request(92, 920), observer);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(observer, timeout(5000)).onError(error.capture());
+        verify(observer, never()).onNext(any());
+        assertThat(Status.fromThrowable(error.getValue()).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+    }
+}
@@ -0,0 +1,34 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.grpc.CreditCardInfo;
+import com.ecommerce.payment.grpc.PaymentRequest;
+import com.ecommerce.payment.grpc.ShippingInfo;
+import com.ecommerce.payment.grpc.ShippingType;
+import com.ecommerce.payment.grpc.UserInfo;
+
+public final class PaymentRequests {
+
+    private PaymentRequests() {
+    }
+
+    public static PaymentRequest request(int userId, int itemId) {
+        return PaymentRequest.newBuilder()
+                .setUserInfo(UserInfo.newBuilder()
+                        .setUserId(userId)
+                        .setFirstName("John").setLastName("Doe")
+                        .setStreet("Main Street").setNumber("123")
+                        .setProvince("Ontario").setCountry("Canada").setPostalCode("M5H 2N2"))
+                .setItemId(itemId)
+                .setItemCost(100)
+                .setShippingInfo(ShippingInfo.newBuilder()
+                        .setShippingType(ShippingType.EXPEDITED)
+                        .setShippingCost(15)
+                        .setEstimatedDays(3))
+                .setCreditCardInfo(CreditCardInfo.newBuilder()
+                        .setCardNumber("4111 1111 1111 1111")
+                        .setNameOnCard("John Doe")
+                        .setExpiryDate("12/30")
+                        .setSecurityCode("123"))
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.grpc.PaymentResponse;
+import com.ecommerce.payment.grpc.ReceiptInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentResponseCacheTest {
+
+    private final PaymentResponseCache cache = new PaymentResponseCache(
+            new SimpleMeterRegistry(), 100, Duration.ofHours(1), Duration.ofSeconds(2));
+
+    @Test
+    void invalidatingAPaymentDropsItsReceiptIdEntryToo() {
+        PaymentResponse response = PaymentResponse.newBuilder()
+                .setSuccess(true)
+                .setPaymentId(100000001)
+                .setReceiptInfo(ReceiptInfo.newBuilder().setReceiptId(10000001))
+                .build();
+        cache.put(100000001, Payment.PaymentStatus.COMPLETED, response);
+        cache.put(10000001, Payment.PaymentStatus.COMPLETED, response);
+        PaymentResponse other = response.toBuilder()
+                .setPaymentId(100000002)
+                .setReceiptInfo(ReceiptInfo.newBuilder().setReceiptId(10000002))
+                .build();
+        cache.put(10000002, Payment.PaymentStatus.COMPLETED, other);
+
+        cache.invalidate(100000001);
+
+        assertThat(cache.get(100000001)).isNull();
+        assertThat(cache.get(10000001)).isNull();
+        assertThat(cache.get(10000002)).isEqualTo(other);
+    }
+
+    @Test
+    void responsesWithoutAReceiptAreInvalidatedByPaymentId() {
+        PaymentResponse response = PaymentResponse.newBuilder().setSuccess(true).setPaymentId(100000003).build();
+        cache.put(100000003, Payment.PaymentStatus.PROCESSING, response);
+
+        assertThat(cache.get(100000003)).isEqualTo(response);
+        cache.invalidate(100000003);
+        assertThat(cache.get(100000003)).isNull();
+    }
+}
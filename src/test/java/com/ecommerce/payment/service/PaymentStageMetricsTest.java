@@ -0,0 +1,55 @@
+package com.ecommerce.payment.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PaymentStageMetricsTest {
+
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void everyStageOfACompletedPaymentIsTimed() {
+        PaymentStageMetrics.Stage[] stages = PaymentStageMetrics.Stage.values();
+        long[] before = new long[stages.length];
+        for (PaymentStageMetrics.Stage stage : stages) {
+            before[stage.ordinal()] = count(stage);
+        }
+
+        assertThat(paymentService.processPayment(PaymentRequests.request(31, 310)).join().getSuccess()).isTrue();
+
+        for (PaymentStageMetrics.Stage stage : stages) {
+            // Only requests carrying an idempotency key are looked up
+            long expected = stage == PaymentStageMetrics.Stage.IDEMPOTENCY_LOOKUP ? 0 : 1;
+            assertThat(count(stage) - before[stage.ordinal()]).as(stage.name()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void duplicateIsTimedByTheDuplicateCheck() {
+        paymentService.processPayment(PaymentRequests.request(32, 320)).join();
+        long checks = count(PaymentStageMetrics.Stage.DUPLICATE_CHECK);
+        long receipts = count(PaymentStageMetrics.Stage.RECEIPT);
+
+        assertThat(paymentService.processPayment(PaymentRequests.request(32, 320)).join().getSuccess()).isFalse();
+
+        assertThat(count(PaymentStageMetrics.Stage.DUPLICATE_CHECK)).isEqualTo(checks + 1);
+        assertThat(count(PaymentStageMetrics.Stage.RECEIPT)).isEqualTo(receipts);
+    }
+
+    private long count(PaymentStageMetrics.Stage stage) {
+        return meterRegistry.get("payment.process.stage")
+                .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                .timer()
+                .count();
+    }
+}
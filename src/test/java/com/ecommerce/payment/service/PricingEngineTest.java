@@ -0,0 +1,131 @@
+package com.ecommerce.payment.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PricingEngineTest {
+
+    // Includes rates whose tax lands on .xx5 (0.005, 0.125, 0.145) and ones too precise for the long path
+    private static final double[] RATES = {
+            0, 0.005, 0.05, 0.11, 0.125, 0.13, 0.135, 0.145, 0.14975, 0.15, 1, 2.5,
+            0.1234567890123, 0.12345678901234567, 1e-10, 123456.789
+    };
+
+    @TempDir
+    Path dir;
+
+    private static PricingEngine engine(String ratesFile) throws IOException {
+        PricingEngine engine = new PricingEngine();
+        ReflectionTestUtils.setField(engine, "hstRate", 0.13);
+        ReflectionTestUtils.setField(engine, "taxRates", "ON:0.13,QC:0.14975,AB:0.05");
+        ReflectionTestUtils.setField(engine, "ratesFile", ratesFile);
+        ReflectionTestUtils.setField(engine, "expeditedSurcharge", 10);
+        engine.init();
+        return engine;
+    }
+
+    @Test
+    void quotesUseTheBuyersProvince() throws IOException {
+        PricingEngine engine = engine("");
+
+        PricingEngine.Quote ontario = engine.quote(100, 15, "ON");
+        assertThat(ontario.hstCents()).isEqualTo(1495);
+        assertThat(ontario.totalAmount()).isEqualTo(129.95);
+        assertThat(engine.quote(100, 15, "Alberta").hstAmount()).isEqualTo(5.75);
+        // Unknown provinces fall back to payment.hst.rate
+        assertThat(engine.quote(100, 15, "XX").hstRate()).isEqualTo(0.13);
+    }
+
+    @Test
+    void ratesFileOverridesTheDefaultsAndIsReloadedWhenItChanges() throws IOException {
+        Path file = dir.resolve("tax-rates");
+        Files.writeString(file, "ON:0.15\nAB:0.07\n");
+        PricingEngine engine = engine(file.toString());
+        assertThat(engine.quote(100, 0, "ON").hstRate()).isEqualTo(0.15);
+
+        Files.writeString(file, "ON:0.12,AB:0.07");
+        engine.reloadRatesFile();
+        assertThat(engine.quote(100, 0, "ON").hstRate()).isEqualTo(0.12);
+
+        // A broken file keeps the last good table
+        Files.writeString(file, "ON:lots");
+        engine.reloadRatesFile();
+        assertThat(engine.quote(100, 0, "ON").hstRate()).isEqualTo(0.12);
+    }
+
+    @Test
+    void missingRatesFileFailsStartup() {
+        assertThatThrownBy(() -> engine(dir.resolve("missing").toString()))
+                .isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void quotesMatchTheBigDecimalPricingTheyReplaced() throws IOException {
+        int[] shipping = {0, 1, 5, 15, 25, 1000, 65_535};
+        int[] largeItems = {12_345, 999_999, Integer.MAX_VALUE / 2, Integer.MAX_VALUE - 65_535};
+        for (double rate : RATES) {
+            PricingEngine engine = new PricingEngine();
+            ReflectionTestUtils.setField(engine, "hstRate", rate);
+            ReflectionTestUtils.setField(engine, "taxRates", "");
+            ReflectionTestUtils.setField(engine, "ratesFile", "");
+            engine.init();
+            for (int shippingCost : shipping) {
+                for (int itemCost = 0; itemCost <= 2000; itemCost++) {
+                    assertSamePrice(engine, itemCost, shippingCost, rate);
+                }
+                for (int itemCost : largeItems) {
+                    assertSamePrice(engine, itemCost, shippingCost, rate);
+                }
+            }
+        }
+    }
+
+    @Test
+    void taxOnAnyCentsMatchesBigDecimalIncludingTheOverflowFallback() {
+        long[] cents = {
+                0, 1, 5, 50, 99, 101, 1_005, 12_345, -1, -5, -12_345,
+                Integer.MAX_VALUE * 100L, 1L << 52, (1L << 52) + 1, Long.MAX_VALUE / 4, -(Long.MAX_VALUE / 4)
+        };
+        for (double rate : RATES) {
+            if (rate > 2.5) {
+                continue; // the tax itself would not fit a long
+            }
+            TaxRateTable.Rate taxRate = new TaxRateTable.Rate(rate);
+            for (long subtotal : cents) {
+                BigDecimal expected = BigDecimal.valueOf(subtotal, 2).multiply(BigDecimal.valueOf(rate))
+                        .setScale(2, RoundingMode.HALF_UP);
+                assertThat(taxRate.taxCents(subtotal))
+                        .as("%d cents at %s", subtotal, rate)
+                        .isEqualTo(expected.unscaledValue().longValueExact());
+            }
+        }
+    }
+
+    // The item + shipping + HST math PaymentService did before PricingEngine
+    private static void assertSamePrice(PricingEngine engine, int itemCost, int shippingCost, double rate) {
+        BigDecimal subtotal = BigDecimal.valueOf(itemCost).setScale(2, RoundingMode.HALF_UP)
+                .add(BigDecimal.valueOf(shippingCost).setScale(2, RoundingMode.HALF_UP));
+        BigDecimal hst = subtotal.multiply(BigDecimal.valueOf(rate)).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal total = subtotal.add(hst).setScale(2, RoundingMode.HALF_UP);
+
+        PricingEngine.Quote quote = engine.quote(itemCost, shippingCost, "XX");
+        String what = itemCost + " + " + shippingCost + " at " + rate;
+        assertThat(quote.hstCents()).as(what).isEqualTo(hst.unscaledValue().longValueExact());
+        assertThat(quote.totalCents()).as(what).isEqualTo(total.unscaledValue().longValueExact());
+        assertThat(Double.doubleToRawLongBits(quote.hstAmount())).as(what)
+                .isEqualTo(Double.doubleToRawLongBits(hst.doubleValue()));
+        assertThat(Double.doubleToRawLongBits(quote.totalAmount())).as(what)
+                .isEqualTo(Double.doubleToRawLongBits(total.doubleValue()));
+    }
+}
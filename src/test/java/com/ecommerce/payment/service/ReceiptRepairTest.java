@@ -0,0 +1,96 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.grpc.PaymentResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "payment.receipt.write-mode=ASYNC",
+        "payment.receipt.async.max-retry=PT0.5S",
+        "payment.receipt.async.repair-grace=PT2S",
+        "payment.receipt.async.repair-interval=PT1H"
+})
+class ReceiptRepairTest {
+
+    private static final int SWEEPERS = 4;
+
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void lostReceiptIsReissuedExactlyOnceByConcurrentSweeps() throws Exception {
+        PaymentResponse response = paymentService.processPayment(PaymentRequests.request(7, 70)).join();
+        assertThat(response.getSuccess()).isTrue();
+        int paymentId = response.getPaymentId();
+        awaitReceipts(paymentId, 1);
+
+        // Lost, as if the node had crashed before the writer got to it
+        jdbcTemplate.update("DELETE FROM receipts WHERE payment_id = ?", paymentId);
+        Thread.sleep(2200);
+
+        CyclicBarrier start = new CyclicBarrier(SWEEPERS);
+        ExecutorService executor = Executors.newFixedThreadPool(SWEEPERS);
+        List<Future<?>> sweeps = new ArrayList<>();
+        try {
+            for (int i = 0; i < SWEEPERS; i++) {
+                sweeps.add(executor.submit(() -> {
+                    start.await();
+                    paymentService.repairMissingReceipts();
+                    return null;
+                }));
+            }
+            for (Future<?> sweep : sweeps) {
+                sweep.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        paymentService.repairMissingReceipts();
+
+        assertThat(receiptCount(paymentId)).isEqualTo(1);
+        assertThat(paymentService.getPaymentById(paymentId).getReceiptInfo().getReceiptId()).isPositive();
+    }
+
+    @Test
+    void receiptsWithinTheGracePeriodAreLeftAlone() {
+        PaymentResponse response = paymentService.processPayment(PaymentRequests.request(8, 80)).join();
+        int paymentId = response.getPaymentId();
+        awaitReceipts(paymentId, 1);
+        jdbcTemplate.update("DELETE FROM receipts WHERE payment_id = ?", paymentId);
+
+        paymentService.repairMissingReceipts();
+
+        assertThat(receiptCount(paymentId)).isZero();
+    }
+
+    private int receiptCount(int paymentId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM receipts WHERE payment_id = ?", Integer.class, paymentId);
+        return count == null ? 0 : count;
+    }
+
+    private void awaitReceipts(int paymentId, int expected) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (receiptCount(paymentId) != expected && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        assertThat(receiptCount(paymentId)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,71 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.entity.Receipt;
+import com.ecommerce.payment.repository.ReceiptRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReceiptWriterTest {
+
+    private final ReceiptRepository repository = mock(ReceiptRepository.class);
+
+    private ReceiptWriter writer(Duration maxRetry, Duration repairGrace) {
+        return new ReceiptWriter(repository, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), ReceiptWriter.WriteMode.ASYNC, 10, 10, Duration.ofMillis(1),
+                maxRetry, repairGrace);
+    }
+
+    @Test
+    void repairGraceMustBeLongerThanMaxRetry() {
+        assertThatThrownBy(() -> writer(Duration.ofMinutes(2), Duration.ofMinutes(2)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("repair-grace");
+    }
+
+    @Test
+    void failingReceiptIsGivenUpOnAfterMaxRetry() throws InterruptedException {
+        when(repository.saveAll(any())).thenThrow(new TransientDataAccessResourceException("database down"));
+        ReceiptWriter writer = writer(Duration.ofMillis(500), Duration.ofSeconds(1));
+        writer.start();
+        try {
+            Receipt receipt = Receipt.builder()
+                    .receiptId(10_000_001)
+                    .payment(Payment.builder().paymentId(100_000_001).build())
+                    .build();
+            long submitted = System.nanoTime();
+            writer.submit(receipt);
+            assertThat(writer.pending(100_000_001)).contains(receipt);
+
+            long deadline = submitted + Duration.ofSeconds(5).toNanos();
+            while (writer.pending(100_000_001).isPresent() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(writer.pending(100_000_001)).isEmpty();
+            assertThat(writer.pendingReceipt(10_000_001)).isEmpty();
+            assertThat(Duration.ofNanos(System.nanoTime() - submitted)).isBetween(
+                    Duration.ofMillis(300), Duration.ofMillis(500));
+
+            // Once given up on, the receipt is not written again
+            clearInvocations(repository);
+            Thread.sleep(300);
+            verify(repository, never()).saveAll(any());
+        } finally {
+            writer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ecommerce.payment.service;
+
+import com.ecommerce.payment.entity.Payment;
+import com.ecommerce.payment.entity.UserPaymentTotals;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class UserSpendTotalsTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private UserSpendTotals userSpendTotals;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private PaymentService paymentService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentFirstPaymentsOfAUserAreAllCounted() throws Exception {
+        int userId = 4242;
+        LocalDateTime paidAt = LocalDateTime.of(2026, 1, 1, 12, 0);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int minute = t;
+                workers.add(executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        start.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    userSpendTotals.recordCompleted(payment(userId, 10.25), paidAt.plusMinutes(minute));
+                })));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        UserPaymentTotals totals = userSpendTotals.find(userId).orElseThrow();
+        assertThat(totals.getPaymentCount()).isEqualTo((long) THREADS);
+        assertThat(totals.getTotalPaid()).isEqualByComparingTo(new BigDecimal("82.00"));
+        assertThat(totals.getLastPaymentAt()).isEqualTo(paidAt.plusMinutes(THREADS - 1));
+    }
+
+    @Test
+    void backfillMigrationRebuildsTheTotalsThatPaymentsAddedUpTo() {
+        for (int item = 1; item <= 3; item++) {
+            assertThat(paymentService.processPayment(PaymentRequests.request(5151, item)).join().getSuccess()).isTrue();
+        }
+        assertThat(paymentService.processPayment(PaymentRequests.request(5252, 1)).join().getSuccess()).isTrue();
+        List<Map<String, Object>> live = totalsRows();
+
+        new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/h2/V3__backfill_user_payment_totals.sql"))
+                .execute(jdbcTemplate.getDataSource());
+
+        assertThat(totalsRows()).isEqualTo(live);
+        assertThat(userSpendTotals.find(5151).orElseThrow().getPaymentCount()).isEqualTo(3L);
+    }
+
+    private List<Map<String, Object>> totalsRows() {
+        return jdbcTemplate.queryForList("SELECT * FROM user_payment_totals " +
+                "WHERE user_id IN (5151, 5252) ORDER BY user_id");
+    }
+
+    private static Payment payment(int userId, double totalAmount) {
+        return Payment.builder().userId(userId).totalAmount(totalAmount).build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.ecommerce.payment.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockIdAllocatorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 200_000;
+    private static final int BLOCK_SIZE = 100;
+
+    @Test
+    void concurrentDrawsAreUniqueAndComeFromReservedBlocks() throws Exception {
+        AtomicLong sequence = new AtomicLong(1_000);
+        AtomicInteger reservations = new AtomicInteger();
+        BlockIdAllocator allocator = new BlockIdAllocator(() -> {
+            reservations.incrementAndGet();
+            long start = sequence.getAndAdd(BLOCK_SIZE);
+            return LongStream.range(start, start + BLOCK_SIZE).toArray();
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> draws = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                draws.add(executor.submit(() -> {
+                    long[] ids = new long[IDS_PER_THREAD];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = allocator.next();
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> seen = new HashSet<>(THREADS * IDS_PER_THREAD * 2);
+            for (Future<long[]> draw : draws) {
+                long[] ids = draw.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertThat(seen.add(ids[i])).as("id %d drawn twice", ids[i]).isTrue();
+                    // Blocks are handed out in sequence order, so each thread sees increasing ids
+                    if (i > 0) {
+                        assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long total = (long) THREADS * IDS_PER_THREAD;
+        // Every id came from a reserved block and at most one block per thread is left partly used
+        assertThat(reservations.get()).isBetween((int) (total / BLOCK_SIZE), (int) (total / BLOCK_SIZE) + THREADS);
+    }
+
+    @Test
+    void emptyBlocksAreSkipped() {
+        AtomicInteger calls = new AtomicInteger();
+        BlockIdAllocator allocator = new BlockIdAllocator(() ->
+                calls.getAndIncrement() % 2 == 0 ? new long[0] : new long[]{calls.get()});
+
+        assertThat(allocator.next()).isEqualTo(2);
+        assertThat(allocator.next()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,34 @@
+package com.ecommerce.payment.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CreditCardValidatorTest {
+
+    private final CreditCardValidator validator = new CreditCardValidator();
+
+    @Test
+    void validCardsShareOneResult() {
+        CreditCardValidator.ValidationResult first =
+                validator.validateCreditCard("4111 1111 1111 1111", "John Doe", "12/99", "123");
+        CreditCardValidator.ValidationResult second =
+                validator.validateCreditCard("5555555555554444", "Jane Roe", "01/98", "4567");
+
+        assertThat(first.isValid()).isTrue();
+        assertThat(first.getErrors()).isEmpty();
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void everyFailedCheckIsReportedInOrder() {
+        CreditCardValidator.ValidationResult result =
+                validator.validateCreditCard("4111 1111 1111 1112", "J", "01/20", "12");
+
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.getErrors()).isEqualTo(
+                "Invalid card number; Invalid name on card; Invalid or expired card; Invalid security code");
+        assertThat(validator.validateCreditCard("4111 1111 1111 1111", "John Doe", "12/99", "1").getErrors())
+                .isEqualTo("Invalid security code");
+    }
+}